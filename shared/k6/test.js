@@ -45,7 +45,7 @@ export let options = {
   }
 };
 
-const host = "http://host.docker.internal:5001";
+const host = "http://" + (__ENV.HOST || "host.docker.internal:5001");
 
 export function normal() {
   http.get(host + "/product/1/similar");
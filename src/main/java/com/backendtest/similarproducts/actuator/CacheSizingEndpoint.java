@@ -0,0 +1,45 @@
+package com.backendtest.similarproducts.actuator;
+
+import com.backendtest.similarproducts.cache.CacheMissRatioCurves;
+import com.backendtest.similarproducts.cache.MissRatioCurve;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Actuator endpoint with the estimated miss ratio curve of each local cache ({@code GET}), and restarting
+ * the estimates ({@code DELETE})
+ */
+@Component
+@Endpoint(id = "cachesizing")
+@RequiredArgsConstructor
+public class CacheSizingEndpoint {
+
+    /**
+     * Estimate of a cache, with the hit ratio at each candidate size
+     */
+    public record CacheCurve(long maximumSize, long accesses, Double extraHitsPerThousandEntries,
+                             List<MissRatioCurve.Point> curve) {
+    }
+
+    private final CacheMissRatioCurves missRatioCurves;
+
+    @ReadOperation
+    public Map<String, CacheCurve> curves() {
+        Map<String, CacheCurve> curves = new TreeMap<>();
+        missRatioCurves.curves().forEach((name, curve) -> curves.put(name, new CacheCurve(
+                curve.getMaximumSize(), curve.accesses(), curve.extraHitsPerThousandEntries(), curve.points())));
+        return curves;
+    }
+
+    @DeleteOperation
+    public void clear() {
+        missRatioCurves.clear();
+    }
+}
@@ -0,0 +1,27 @@
+package com.backendtest.similarproducts.actuator;
+
+import com.backendtest.similarproducts.hotkeys.HeavyHitters;
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint listing the top requested, downstream-miss and slow products
+ */
+@Component
+@Endpoint(id = "hotkeys")
+@RequiredArgsConstructor
+public class HotKeysEndpoint {
+
+    private final HotKeyTracker hotKeyTracker;
+
+    @ReadOperation
+    public Map<String, List<HeavyHitters.Entry>> hotKeys() {
+        return hotKeyTracker.top();
+    }
+}
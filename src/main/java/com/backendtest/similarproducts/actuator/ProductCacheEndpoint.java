@@ -0,0 +1,60 @@
+package com.backendtest.similarproducts.actuator;
+
+import com.backendtest.similarproducts.event.ProductChangeEvent;
+import com.backendtest.similarproducts.service.CacheInvalidationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Actuator endpoint to evict ({@code DELETE}) or refresh ({@code POST}) the cached data of a product.
+ * The optional {@code type} parameter selects {@code detail} (default) or {@code similar_ids}.
+ */
+@Component
+@Endpoint(id = "productcache")
+@RequiredArgsConstructor
+public class ProductCacheEndpoint {
+
+    private final CacheInvalidationService cacheInvalidationService;
+
+    @DeleteOperation
+    public Map<String, Object> evict(@Selector String productId, @Nullable String type) {
+        return invalidate(productId, type, false);
+    }
+
+    @WriteOperation
+    public Map<String, Object> refresh(@Selector String productId, @Nullable String type) {
+        return invalidate(productId, type, true);
+    }
+
+    private Map<String, Object> invalidate(String productId, String type, boolean refresh) {
+        ProductChangeEvent.Type changeType = parseType(type);
+        List<String> evictedLists = cacheInvalidationService.invalidate(
+                new ProductChangeEvent(productId, changeType, refresh)).block();
+        return Map.of(
+                "productId", productId,
+                "type", changeType,
+                "refresh", refresh,
+                "evictedSimilarProducts", evictedLists);
+    }
+
+    private ProductChangeEvent.Type parseType(String type) {
+        if (type == null) {
+            return ProductChangeEvent.Type.DETAIL;
+        }
+        try {
+            return ProductChangeEvent.Type.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException("Unknown type: " + type, "Unknown type");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.backendtest.similarproducts.actuator;
+
+import com.backendtest.similarproducts.profiling.JfrProfiler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Actuator endpoint to start a JFR profiling session ({@code POST} with an optional {@code duration} in seconds),
+ * read the summary of the running or last one ({@code GET}), download its {@code .jfr} recording
+ * ({@code GET /recording}) and stop it early ({@code DELETE})
+ */
+@Component
+@Endpoint(id = "profiling")
+@RequiredArgsConstructor
+public class ProfilingEndpoint {
+
+    private static final String RECORDING = "recording";
+
+    private final JfrProfiler profiler;
+
+    @ReadOperation
+    public WebEndpointResponse<JfrProfiler.Profile> profile() {
+        JfrProfiler.Profile profile = profiler.profile();
+        return profile != null
+                ? new WebEndpointResponse<>(profile)
+                : new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> recording(@Selector String name) {
+        Path recording = profiler.recording();
+        if (!RECORDING.equals(name) || recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        return new WebEndpointResponse<>(new FileSystemResource(recording));
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<JfrProfiler.Profile> start(@Nullable Integer duration) {
+        try {
+            return new WebEndpointResponse<>(profiler.start(duration != null ? Duration.ofSeconds(duration) : null));
+        } catch (IllegalStateException e) {
+            return new WebEndpointResponse<>(profiler.profile(), 409);
+        }
+    }
+
+    @DeleteOperation
+    public JfrProfiler.Profile stop() {
+        profiler.stop();
+        return profiler.profile();
+    }
+}
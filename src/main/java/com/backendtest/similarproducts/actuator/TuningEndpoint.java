@@ -0,0 +1,39 @@
+package com.backendtest.similarproducts.actuator;
+
+import com.backendtest.similarproducts.tuning.PerformanceSettings;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint to read ({@code GET}) the tunable performance settings with their change history,
+ * and to change one of them ({@code POST} with {@code setting} and {@code value}) without restarting.
+ */
+@Component
+@Endpoint(id = "tuning")
+@RequiredArgsConstructor
+public class TuningEndpoint {
+
+    private final PerformanceSettings performanceSettings;
+
+    @ReadOperation
+    public Map<String, Object> settings() {
+        return Map.of(
+                "settings", performanceSettings.current(),
+                "history", performanceSettings.history());
+    }
+
+    @WriteOperation
+    public PerformanceSettings.Change update(String setting, int value) {
+        try {
+            return performanceSettings.update(setting, value);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.backendtest.similarproducts.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Miss ratio curves of the local caches, by cache name. Each point is also published as the
+ * {@code cache.estimated.hit.ratio} gauge, tagged by cache and size scale.
+ */
+@Component
+public class CacheMissRatioCurves {
+
+    private final Map<String, MissRatioCurve> curves = new ConcurrentSkipListMap<>();
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double[] scales;
+    private final int sampling;
+
+    public CacheMissRatioCurves(
+            MeterRegistry meterRegistry,
+            @Value("${cache.mrc.enabled:true}") boolean enabled,
+            @Value("${cache.mrc.scales:0.25,0.5,1,2,4}") double[] scales,
+            @Value("${cache.mrc.sampling:16}") int sampling) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.scales = scales;
+        this.sampling = sampling;
+    }
+
+    /**
+     * Start estimating the miss ratio curve of a cache
+     * @return Curve to record the accesses of the cache in, null if the estimation is disabled
+     */
+    public MissRatioCurve register(String cacheName, long maximumSize, Duration expiration, Duration idleExpiration) {
+        if (!enabled) {
+            return null;
+        }
+        MissRatioCurve curve = new MissRatioCurve(scales, sampling, maximumSize, expiration, idleExpiration);
+        curves.put(cacheName, curve);
+        for (int i = 0; i < scales.length; i++) {
+            int point = i;
+            Gauge.builder("cache.estimated.hit.ratio", curve, c -> c.points().get(point).hitRatio())
+                    .description("Hit ratio the cache would reach with its maximum size multiplied by the scale")
+                    .tag("cache", cacheName)
+                    .tag("scale", String.valueOf(scales[i]))
+                    .register(meterRegistry);
+        }
+        return curve;
+    }
+
+    public Map<String, MissRatioCurve> curves() {
+        return Collections.unmodifiableMap(curves);
+    }
+
+    /**
+     * Restart every estimate, for instance once the warmup traffic is over
+     */
+    public void clear() {
+        curves.values().forEach(MissRatioCurve::clear);
+    }
+}
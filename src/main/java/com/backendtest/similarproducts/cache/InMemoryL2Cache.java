@@ -0,0 +1,89 @@
+package com.backendtest.similarproducts.cache;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Embedded stand-in for the shared cache tier, for tests and local runs.
+ * Several application contexts in the same JVM can share one instance to emulate a cluster.
+ */
+public class InMemoryL2Cache implements L2Cache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, SetEntry> sets = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public CompletableFuture<byte[]> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (entry.expiresAt() < System.nanoTime()) {
+            entries.remove(key, entry);
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.completedFuture(entry.value());
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, byte[] value, Duration ttl) {
+        entries.put(key, new Entry(value, System.nanoTime() + ttl.toNanos()));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> evict(String key) {
+        entries.remove(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> addToSet(String key, String member, Duration ttl) {
+        long expiresAt = System.nanoTime() + ttl.toNanos();
+        sets.compute(key, (k, set) -> {
+            Set<String> members = set == null || set.expiresAt() < System.nanoTime()
+                    ? ConcurrentHashMap.newKeySet()
+                    : set.members();
+            members.add(member);
+            return new SetEntry(members, expiresAt);
+        });
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> removeSet(String key) {
+        SetEntry set = sets.remove(key);
+        return CompletableFuture.completedFuture(set == null || set.expiresAt() < System.nanoTime()
+                ? Set.of()
+                : new HashSet<>(set.members()));
+    }
+
+    @Override
+    public CompletableFuture<Void> publishEviction(String key) {
+        evictionListeners.forEach(listener -> listener.accept(key));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void subscribeEvictions(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private record Entry(byte[] value, long expiresAt) {
+    }
+
+    private record SetEntry(Set<String> members, long expiresAt) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.backendtest.similarproducts.cache;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Shared, out-of-process second cache tier sitting behind the local Caffeine caches.
+ * Values are opaque, already serialized payloads.
+ */
+public interface L2Cache {
+
+    /**
+     * Look up a serialized value
+     * @param key Fully qualified cache key
+     * @return Future of the payload, completing with null on a miss
+     */
+    CompletableFuture<byte[]> get(String key);
+
+    /**
+     * Store a serialized value
+     * @param key Fully qualified cache key
+     * @param value Payload
+     * @param ttl Time to live of the entry
+     * @return Future completing once the write is acknowledged
+     */
+    CompletableFuture<Void> put(String key, byte[] value, Duration ttl);
+
+    /**
+     * Remove a value
+     * @param key Fully qualified cache key
+     * @return Future completing once the removal is acknowledged
+     */
+    CompletableFuture<Void> evict(String key);
+
+    /**
+     * Add a member to a shared set, restarting the time to live of the set
+     * @param key Fully qualified set key
+     * @param member Member to add
+     * @param ttl Time to live of the set
+     * @return Future completing once the write is acknowledged
+     */
+    CompletableFuture<Void> addToSet(String key, String member, Duration ttl);
+
+    /**
+     * Remove a shared set at once
+     * @param key Fully qualified set key
+     * @return Future of the members the set had, empty if there was none
+     */
+    CompletableFuture<Set<String>> removeSet(String key);
+
+    /**
+     * Tell every replica sharing this tier that a value was evicted, so that they drop their local copy
+     * @param key Fully qualified cache key
+     * @return Future completing once the notice is sent
+     */
+    CompletableFuture<Void> publishEviction(String key);
+
+    /**
+     * Listen to the evictions published by any replica, this one included
+     * @param listener Consumer of the fully qualified keys evicted
+     */
+    void subscribeEvictions(Consumer<String> listener);
+}
@@ -0,0 +1,57 @@
+package com.backendtest.similarproducts.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Compact binary (Smile) serialization of the cached values, with one fixed value type per cache
+ */
+public class L2CacheCodec {
+
+    private static final byte[] NULL_VALUE = new byte[0];
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, JavaType> valueTypes;
+
+    public L2CacheCodec(ObjectMapper objectMapper, Map<String, JavaType> valueTypes) {
+        SmileFactory smileFactory = new SmileFactory()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        this.objectMapper = objectMapper.copyWith(smileFactory);
+        this.valueTypes = Map.copyOf(valueTypes);
+    }
+
+    /**
+     * Whether values of the given cache can be stored in the shared tier
+     */
+    public boolean supports(String cacheName) {
+        return valueTypes.containsKey(cacheName);
+    }
+
+    public byte[] encode(Object value) {
+        if (value == null) {
+            return NULL_VALUE;
+        }
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Object decode(String cacheName, byte[] payload) {
+        if (payload.length == 0) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(payload, valueTypes.get(cacheName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.backendtest.similarproducts.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Online estimate of the hit ratio a cache would reach at other sizes. A spatially sampled subset of the
+ * accessed keys (the keys whose hash falls in one of {@code sampling} buckets) is replayed into ghost caches
+ * that keep only keys, one per candidate size scaled down by the same factor. Each ghost has the eviction
+ * and expiration policy of the real cache, so its hit ratio tracks the one the real cache would have.
+ */
+public class MissRatioCurve {
+
+    /**
+     * Estimated hit ratio at a cache size
+     */
+    public record Point(double scale, long maximumSize, double hitRatio) {
+    }
+
+    private final double[] scales;
+    private final int samplingMask;
+    private final int sampling;
+    private volatile Ghosts ghosts;
+
+    /**
+     * @param scales Candidate sizes, as factors of the current maximum size
+     * @param sampling One key out of this many is sampled, rounded down to a power of two
+     * @param maximumSize Current maximum size of the cache
+     * @param expiration Expiration after write of the cache
+     * @param idleExpiration Expiration after access of the cache, zero if entries do not expire when idle
+     */
+    public MissRatioCurve(double[] scales, int sampling, long maximumSize, Duration expiration, Duration idleExpiration) {
+        this.scales = scales.clone();
+        this.sampling = Integer.highestOneBit(Math.max(1, sampling));
+        this.samplingMask = this.sampling - 1;
+        this.ghosts = new Ghosts(maximumSize, expiration, idleExpiration);
+    }
+
+    /**
+     * Replay an access to the cache, if its key is sampled
+     */
+    public void record(Object key) {
+        if ((spread(key.hashCode()) & samplingMask) != 0) {
+            return;
+        }
+        Ghosts current = ghosts;
+        current.accesses.increment();
+        for (Ghost ghost : current.ghosts) {
+            ghost.access(key);
+        }
+    }
+
+    /**
+     * Restart the estimate for a new maximum size of the cache
+     */
+    public synchronized void resize(long maximumSize) {
+        ghosts = new Ghosts(maximumSize, ghosts.expiration, ghosts.idleExpiration);
+    }
+
+    /**
+     * Restart the estimate for a new expiration after write of the cache
+     */
+    public synchronized void expire(Duration expiration) {
+        ghosts = new Ghosts(ghosts.maximumSize, expiration, ghosts.idleExpiration);
+    }
+
+    /**
+     * Restart the estimate with the current policy, discarding the accesses seen so far
+     */
+    public synchronized void clear() {
+        ghosts = new Ghosts(ghosts.maximumSize, ghosts.expiration, ghosts.idleExpiration);
+    }
+
+    /**
+     * Estimated hit ratio at each candidate size, in the order of the scales
+     */
+    public List<Point> points() {
+        Ghosts current = ghosts;
+        long accesses = current.accesses.sum();
+        List<Point> points = new ArrayList<>(current.ghosts.length);
+        for (int i = 0; i < current.ghosts.length; i++) {
+            double hitRatio = accesses == 0 ? 0 : (double) current.ghosts[i].hits.sum() / accesses;
+            points.add(new Point(scales[i], Math.round(current.maximumSize * scales[i]), hitRatio));
+        }
+        return points;
+    }
+
+    /**
+     * Estimated accesses to the cache since the estimate started
+     */
+    public long accesses() {
+        return ghosts.accesses.sum() * sampling;
+    }
+
+    /**
+     * Extra hits the cache would have served since the estimate started for every thousand more entries,
+     * from its current size to the next larger candidate size. Comparable across caches, it tells which one
+     * turns memory into hits best.
+     * @return Extra hits per thousand entries, null without a candidate size larger than the current one
+     */
+    public Double extraHitsPerThousandEntries() {
+        List<Point> points = points();
+        Point current = null;
+        for (Point point : points) {
+            if (point.scale() == 1) {
+                current = point;
+            } else if (current != null && point.maximumSize() > current.maximumSize()) {
+                return (point.hitRatio() - current.hitRatio()) * accesses()
+                        * 1000 / (point.maximumSize() - current.maximumSize());
+            }
+        }
+        return null;
+    }
+
+    public long getMaximumSize() {
+        return ghosts.maximumSize;
+    }
+
+    /**
+     * Murmur3 finalizer, so that sequential product IDs spread over the sampling buckets
+     */
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Ghost caches of one estimate, replaced as a whole when the policy of the cache changes
+     */
+    private final class Ghosts {
+        private final long maximumSize;
+        private final Duration expiration;
+        private final Duration idleExpiration;
+        private final Ghost[] ghosts;
+        private final LongAdder accesses = new LongAdder();
+
+        private Ghosts(long maximumSize, Duration expiration, Duration idleExpiration) {
+            this.maximumSize = maximumSize;
+            this.expiration = expiration;
+            this.idleExpiration = idleExpiration;
+            this.ghosts = new Ghost[scales.length];
+            for (int i = 0; i < scales.length; i++) {
+                ghosts[i] = new Ghost(Math.round(maximumSize * scales[i] / sampling), expiration, idleExpiration);
+            }
+        }
+    }
+
+    /**
+     * Key-only cache counting the hits of the sampled accesses at one candidate size
+     */
+    private static final class Ghost {
+        private final Cache<Object, Boolean> keys;
+        private final LongAdder hits = new LongAdder();
+
+        private Ghost(long maximumSize, Duration expiration, Duration idleExpiration) {
+            Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(expiration)
+                    .executor(Runnable::run);
+            if (!idleExpiration.isZero()) {
+                builder.expireAfterAccess(idleExpiration);
+            }
+            this.keys = builder.build();
+        }
+
+        private void access(Object key) {
+            if (keys.getIfPresent(key) != null) {
+                hits.increment();
+            } else {
+                keys.put(key, Boolean.TRUE);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.backendtest.similarproducts.cache;
+
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Shared cache tier backed by Redis through a single multiplexed Lettuce connection. Evictions are broadcast
+ * on a pub/sub channel, received through a second connection since a subscribed one accepts no other command.
+ */
+public class RedisL2Cache implements L2Cache {
+
+    private final RedisAsyncCommands<byte[], byte[]> commands;
+    private final byte[] evictionChannel;
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    public RedisL2Cache(StatefulRedisConnection<byte[], byte[]> connection,
+                        StatefulRedisPubSubConnection<byte[], byte[]> pubSubConnection, String evictionChannel) {
+        this.commands = connection.async();
+        this.evictionChannel = bytes(evictionChannel);
+        pubSubConnection.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(byte[] channel, byte[] message) {
+                if (Arrays.equals(channel, RedisL2Cache.this.evictionChannel)) {
+                    String key = new String(message, StandardCharsets.UTF_8);
+                    evictionListeners.forEach(listener -> listener.accept(key));
+                }
+            }
+        });
+        pubSubConnection.async().subscribe(this.evictionChannel);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> get(String key) {
+        return commands.get(bytes(key)).toCompletableFuture();
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, byte[] value, Duration ttl) {
+        return commands.set(bytes(key), value, SetArgs.Builder.px(ttl))
+                .toCompletableFuture()
+                .thenApply(reply -> null);
+    }
+
+    @Override
+    public CompletableFuture<Void> evict(String key) {
+        return commands.del(bytes(key))
+                .toCompletableFuture()
+                .thenApply(removed -> null);
+    }
+
+    @Override
+    public CompletableFuture<Void> addToSet(String key, String member, Duration ttl) {
+        byte[] setKey = bytes(key);
+        CompletableFuture<Long> added = commands.sadd(setKey, bytes(member)).toCompletableFuture();
+        CompletableFuture<Boolean> expiring = commands.pexpire(setKey, ttl.toMillis()).toCompletableFuture();
+        return CompletableFuture.allOf(added, expiring);
+    }
+
+    /**
+     * Pops every member with a single SPOP, so that members added meanwhile are either returned or kept
+     */
+    @Override
+    public CompletableFuture<Set<String>> removeSet(String key) {
+        return commands.spop(bytes(key), Long.MAX_VALUE)
+                .toCompletableFuture()
+                .thenApply(members -> {
+                    Set<String> keys = new HashSet<>(members.size());
+                    members.forEach(member -> keys.add(new String(member, StandardCharsets.UTF_8)));
+                    return keys;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> publishEviction(String key) {
+        return commands.publish(evictionChannel, bytes(key))
+                .toCompletableFuture()
+                .thenApply(receivers -> null);
+    }
+
+    @Override
+    public void subscribeEvictions(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,54 @@
+package com.backendtest.similarproducts.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Caffeine cache replaying every lookup into the miss ratio curve of the cache. Reads of the native cache are
+ * not recorded; callers peeking it record the accesses they end up serving with {@link #record(Object)}.
+ */
+public class SampledCaffeineCache extends CaffeineCache {
+
+    private final MissRatioCurve curve;
+
+    public SampledCaffeineCache(String name, AsyncCache<Object, Object> cache, boolean allowNullValues,
+                                MissRatioCurve curve) {
+        super(name, cache, allowNullValues);
+        this.curve = curve;
+    }
+
+    /**
+     * Record an access served straight from the native cache
+     */
+    public void record(Object key) {
+        curve.record(key);
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        curve.record(key);
+        return super.lookup(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        curve.record(key);
+        return super.get(key, valueLoader);
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        curve.record(key);
+        return super.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        curve.record(key);
+        return super.retrieve(key, valueLoader);
+    }
+}
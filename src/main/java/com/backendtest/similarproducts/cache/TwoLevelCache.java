@@ -0,0 +1,270 @@
+package com.backendtest.similarproducts.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cache reading the local Caffeine tier first, then the shared {@link L2Cache}, then the method itself.
+ * Values loaded from the method are written to both tiers, the shared one asynchronously. Evictions remove the
+ * shared value, then are broadcast through the shared tier so that every replica drops its local copy.
+ */
+@Slf4j
+public class TwoLevelCache implements Cache {
+
+    private final CaffeineCache local;
+    private final L2Cache l2Cache;
+    private final L2CacheCodec codec;
+    private final String keyPrefix;
+    private final Duration ttl;
+    private final Duration timeout;
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private volatile boolean sharedWrites = true;
+
+    public TwoLevelCache(CaffeineCache local, L2Cache l2Cache, L2CacheCodec codec, String keyPrefix,
+                         Duration ttl, Duration timeout, MeterRegistry meterRegistry) {
+        this.local = local;
+        this.l2Cache = l2Cache;
+        this.codec = codec;
+        this.keyPrefix = keyPrefix + local.getName() + ":";
+        this.ttl = ttl;
+        this.timeout = timeout;
+        this.localHits = tierCounter(meterRegistry, "local", "hit");
+        this.localMisses = tierCounter(meterRegistry, "local", "miss");
+        this.l2Hits = tierCounter(meterRegistry, "l2", "hit");
+        this.l2Misses = tierCounter(meterRegistry, "l2", "miss");
+        l2Cache.subscribeEvictions(this::evictedElsewhere);
+    }
+
+    private Counter tierCounter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("cache.tier.gets")
+                .description("Cache lookups per tier")
+                .tag("cache", local.getName())
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return local.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local.getNativeCache();
+    }
+
+    /**
+     * Local tier of this cache
+     */
+    public CaffeineCache getLocal() {
+        return local;
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper get(Object key) {
+        ValueWrapper cached = local.get(key);
+        if (cached != null) {
+            localHits.increment();
+            return cached;
+        }
+        localMisses.increment();
+        try {
+            return loadFromL2(key, true).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.debug("L2 lookup failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, @Nullable Class<T> type) {
+        ValueWrapper cached = get(key);
+        return cached != null ? (T) cached.get() : null;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        return local.get(key, () -> {
+            T value = valueLoader.call();
+            writeToL2(key, value);
+            return value;
+        });
+    }
+
+    @Override
+    @Nullable
+    public CompletableFuture<?> retrieve(Object key) {
+        CompletableFuture<?> cached = local.retrieve(key);
+        if (cached != null) {
+            localHits.increment();
+            return cached;
+        }
+        localMisses.increment();
+        return loadFromL2(key, true)
+                .thenApply(wrapper -> wrapper == null || local.isAllowNullValues() ? wrapper : wrapper.get());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        // Caffeine calls the loader on the calling thread, only when the local tier has no entry
+        boolean[] missed = {false};
+        CompletableFuture<T> value = local.retrieve(key, () -> {
+            missed[0] = true;
+            return loadFromL2(key, false).thenCompose(wrapper -> {
+                if (wrapper != null) {
+                    return CompletableFuture.completedFuture((T) wrapper.get());
+                }
+                return valueLoader.get().thenApply(loaded -> {
+                    writeToL2(key, loaded);
+                    return loaded;
+                });
+            });
+        });
+        (missed[0] ? localMisses : localHits).increment();
+        return value;
+    }
+
+    /**
+     * Value already loaded in the local tier, without waiting for a load in flight nor reaching the shared tier
+     * @return Cached value, null if the local tier does not hold a loaded one
+     */
+    @Nullable
+    public Object peek(Object key) {
+        Object value = local.getNativeCache().getIfPresent(key);
+        (value != null ? localHits : localMisses).increment();
+        return value;
+    }
+
+    @Override
+    public void put(Object key, @Nullable Object value) {
+        local.put(key, value);
+        writeToL2(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        local.evict(key);
+        evictShared(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        evictShared(key);
+        return local.evictIfPresent(key);
+    }
+
+    /**
+     * Clear the local tier only: the shared tier is common to every replica and expires on its own TTL.
+     * Values that must not be served anywhere should not reach it, see {@link #setSharedWrites(boolean)}.
+     */
+    @Override
+    public void clear() {
+        local.clear();
+    }
+
+    /**
+     * Whether loaded and put values are written to the shared tier, evictions always are
+     */
+    public void setSharedWrites(boolean sharedWrites) {
+        this.sharedWrites = sharedWrites;
+    }
+
+    /**
+     * Look up the shared tier
+     * @param key Cache key
+     * @param promote Whether to copy a hit into the local tier, unnecessary when loading through it
+     * @return Future of the value wrapper, completing with null on a miss or an L2 failure. A payload that
+     * cannot be decoded, such as one written by an incompatible version, counts as a miss and is evicted.
+     */
+    private CompletableFuture<ValueWrapper> loadFromL2(Object key, boolean promote) {
+        return l2Cache.get(l2Key(key))
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((payload, error) -> {
+                    if (error != null) {
+                        log.debug("L2 lookup failed for {}: {}", key, error.getMessage());
+                        return null;
+                    }
+                    if (payload == null) {
+                        l2Misses.increment();
+                        return null;
+                    }
+                    Object value;
+                    try {
+                        value = codec.decode(getName(), payload);
+                    } catch (RuntimeException e) {
+                        log.debug("L2 value of {} cannot be decoded: {}", key, e.getMessage());
+                        l2Misses.increment();
+                        l2Cache.evict(l2Key(key));
+                        return null;
+                    }
+                    l2Hits.increment();
+                    if (promote) {
+                        local.put(key, value);
+                    }
+                    return new SimpleValueWrapper(value);
+                });
+    }
+
+    /**
+     * Remove the shared value before telling the other replicas, so that they do not reload the stale one
+     */
+    private void evictShared(Object key) {
+        String l2Key = l2Key(key);
+        l2Cache.evict(l2Key)
+                .handle((removed, error) -> l2Cache.publishEviction(l2Key))
+                .thenCompose(published -> published)
+                .exceptionally(error -> {
+                    log.debug("L2 eviction failed for {}: {}", key, error.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Drop the local copy of a value evicted by any replica. Keys travel in their string form.
+     */
+    private void evictedElsewhere(String l2Key) {
+        if (l2Key.startsWith(keyPrefix)) {
+            local.evict(l2Key.substring(keyPrefix.length()));
+        }
+    }
+
+    private void writeToL2(Object key, @Nullable Object value) {
+        if (!sharedWrites) {
+            return;
+        }
+        l2Cache.put(l2Key(key), codec.encode(value), ttl)
+                .exceptionally(error -> {
+                    log.debug("L2 write failed for {}: {}", key, error.getMessage());
+                    return null;
+                });
+    }
+
+    private String l2Key(Object key) {
+        return keyPrefix + key;
+    }
+}
@@ -0,0 +1,73 @@
+package com.backendtest.similarproducts.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache manager putting a shared {@link L2Cache} tier behind the caches of a {@link CaffeineCacheManager}.
+ * Caches whose values the codec does not know stay local only.
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CaffeineCacheManager localCacheManager;
+    private final L2Cache l2Cache;
+    private final L2CacheCodec codec;
+    private final String keyPrefix;
+    private final Duration ttl;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+    private volatile boolean sharedWrites = true;
+
+    public TwoLevelCacheManager(CaffeineCacheManager localCacheManager, L2Cache l2Cache, L2CacheCodec codec,
+                                String keyPrefix, Duration ttl, Duration timeout, MeterRegistry meterRegistry) {
+        this.localCacheManager = localCacheManager;
+        this.l2Cache = l2Cache;
+        this.codec = codec;
+        this.keyPrefix = keyPrefix;
+        this.ttl = ttl;
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    @Nullable
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, cacheName -> {
+            Cache local = localCacheManager.getCache(cacheName);
+            if (local instanceof CaffeineCache caffeineCache && codec.supports(cacheName)) {
+                TwoLevelCache cache = new TwoLevelCache(caffeineCache, l2Cache, codec, keyPrefix, ttl, timeout, meterRegistry);
+                cache.setSharedWrites(sharedWrites);
+                return cache;
+            }
+            return local;
+        });
+    }
+
+    /**
+     * Stop or resume writing values to the shared tier, for instance while the warm-up fills the caches
+     * with results no replica may serve
+     */
+    public void setSharedWrites(boolean sharedWrites) {
+        this.sharedWrites = sharedWrites;
+        caches.values().forEach(cache -> {
+            if (cache instanceof TwoLevelCache twoLevelCache) {
+                twoLevelCache.setSharedWrites(sharedWrites);
+            }
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return localCacheManager.getCacheNames();
+    }
+}
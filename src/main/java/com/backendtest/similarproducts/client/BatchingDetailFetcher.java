@@ -0,0 +1,146 @@
+package com.backendtest.similarproducts.client;
+
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
+import com.backendtest.similarproducts.model.ProductDetail;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Gathers the detail lookups of concurrent requests over a short window, or until a size cap, and sends
+ * them as one multi-ID request. A product missing from the batch answer does not exist. If the product API
+ * answers a batch request with 404, 405 or 501 it has no batch support, and every later lookup falls back
+ * to single requests.
+ */
+@Slf4j
+public class BatchingDetailFetcher implements DetailFetcher {
+
+    private final WebClient webClient;
+    private final DetailFetcher fallback;
+    private final HotKeyTracker hotKeyTracker;
+    private final String batchUrl;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final String logWarnBatchUnsupported;
+    private volatile boolean batchSupported = true;
+    private Map<String, List<MonoSink<ProductDetail>>> pending = new LinkedHashMap<>();
+
+    /**
+     * @param batchUrl URL template of the batch endpoint, with an {@code {ids}} variable for the comma-separated IDs
+     * @param maxBatchSize Distinct IDs that trigger sending a batch before the window ends
+     * @param window Time the first lookup of a batch waits for others
+     */
+    public BatchingDetailFetcher(WebClient webClient, DetailFetcher fallback, HotKeyTracker hotKeyTracker,
+                                 String batchUrl, int maxBatchSize, Duration window, String logWarnBatchUnsupported) {
+        this.webClient = webClient;
+        this.fallback = fallback;
+        this.hotKeyTracker = hotKeyTracker;
+        this.batchUrl = batchUrl;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = window.toNanos();
+        this.logWarnBatchUnsupported = logWarnBatchUnsupported;
+    }
+
+    @Override
+    public Mono<ProductDetail> fetch(String productId) {
+        if (!batchSupported) {
+            return fallback.fetch(productId);
+        }
+        return Mono.create(sink -> enqueue(productId, sink));
+    }
+
+    private void enqueue(String productId, MonoSink<ProductDetail> sink) {
+        Map<String, List<MonoSink<ProductDetail>>> full = null;
+        Map<String, List<MonoSink<ProductDetail>>> opened = null;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                opened = pending;
+            }
+            pending.computeIfAbsent(productId, id -> new ArrayList<>(1)).add(sink);
+            if (pending.size() >= maxBatchSize) {
+                full = pending;
+                pending = new LinkedHashMap<>();
+            }
+        }
+        if (full != null) {
+            send(full);
+        } else if (opened != null) {
+            Map<String, List<MonoSink<ProductDetail>>> batch = opened;
+            Schedulers.parallel().schedule(() -> flush(batch), windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Send a batch when its window ends, unless it was already sent because it was full
+     */
+    private void flush(Map<String, List<MonoSink<ProductDetail>>> batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                return;
+            }
+            pending = new LinkedHashMap<>();
+        }
+        send(batch);
+    }
+
+    private void send(Map<String, List<MonoSink<ProductDetail>>> batch) {
+        long start = System.nanoTime();
+        webClient.get()
+                .uri(batchUrl, String.join(",", batch.keySet()))
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToFlux(ProductDetail.class)
+                                .collect(Collectors.toMap(ProductDetail::getId, Function.identity(), (first, second) -> first));
+                    }
+                    if (isUnsupported(response.statusCode())) {
+                        batchSupported = false;
+                        log.warn(logWarnBatchUnsupported, response.statusCode());
+                    }
+                    return response.releaseBody()
+                            .then(Mono.<Map<String, ProductDetail>>error(new UpstreamStatusException(response.statusCode())));
+                })
+                .doFinally(signal -> batch.keySet()
+                        .forEach(productId -> hotKeyTracker.downstreamCall(productId, System.nanoTime() - start)))
+                .subscribe(
+                        details -> batch.forEach((productId, sinks) -> complete(sinks, details.get(productId))),
+                        error -> batch.forEach((productId, sinks) -> {
+                            if (batchSupported) {
+                                sinks.forEach(sink -> sink.error(error));
+                            } else {
+                                fallback.fetch(productId).subscribe(
+                                        detail -> complete(sinks, detail),
+                                        fallbackError -> sinks.forEach(sink -> sink.error(fallbackError)),
+                                        () -> complete(sinks, null));
+                            }
+                        }));
+    }
+
+    private static void complete(List<MonoSink<ProductDetail>> sinks, ProductDetail detail) {
+        for (MonoSink<ProductDetail> sink : sinks) {
+            if (detail != null) {
+                sink.success(detail);
+            } else {
+                sink.success();
+            }
+        }
+    }
+
+    private static boolean isUnsupported(HttpStatusCode status) {
+        return status.isSameCodeAs(HttpStatus.NOT_FOUND)
+                || status.isSameCodeAs(HttpStatus.METHOD_NOT_ALLOWED)
+                || status.isSameCodeAs(HttpStatus.NOT_IMPLEMENTED);
+    }
+}
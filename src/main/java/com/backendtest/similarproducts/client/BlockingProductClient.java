@@ -0,0 +1,175 @@
+package com.backendtest.similarproducts.client;
+
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
+import com.backendtest.similarproducts.logging.RateLimitedLogger;
+import com.backendtest.similarproducts.model.ProductDetail;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Blocking client for consuming the product related APIs, meant to be called from virtual threads
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "service.execution-mode", havingValue = "virtual-threads")
+public class BlockingProductClient {
+
+    @Value("${log.message.similar-ids-debug}")
+    private String logDebugSimilarIds;
+
+    @Value("${log.message.product-not-found}")
+    private String logProductNotFound;
+
+    @Value("${log.message.error-similar-ids}")
+    private String logErrorSimilarIds;
+
+    @Value("${log.message.warn-circuit-breaker}")
+    private String logWarnCircuitBreaker;
+
+    @Value("${log.message.product-detail-debug}")
+    private String logDebugProductDetail;
+
+    @Value("${log.message.error-product-detail}")
+    private String logErrorProductDetail;
+
+    @Value("${log.message.error-upstream-status}")
+    private String logErrorUpstreamStatus;
+
+    private final RateLimitedLogger errorLog = new RateLimitedLogger(log);
+
+    private final RestClient restClient;
+    private final EntityTagCache entityTagCache;
+    private final HotKeyTracker hotKeyTracker;
+    private final String similarIdsUrl;
+    private final String productDetailUrl;
+
+    public BlockingProductClient(
+            RestClient restClient,
+            EntityTagCache entityTagCache,
+            HotKeyTracker hotKeyTracker,
+            @Value("${api.product.similarids.url}") String similarIdsUrl,
+            @Value("${api.product.detail.url}") String productDetailUrl) {
+        this.restClient = restClient;
+        this.entityTagCache = entityTagCache;
+        this.hotKeyTracker = hotKeyTracker;
+        this.similarIdsUrl = similarIdsUrl;
+        this.productDetailUrl = productDetailUrl;
+    }
+
+    /**
+     * Get similar product IDs for a given product ID
+     * @param productId Product ID to find similar products for
+     * @return List of similar product IDs
+     */
+    @Cacheable(value = "similarIds")
+    @CircuitBreaker(name = "${circuit-breaker.name.product-api}", fallbackMethod = "getSimilarProductIdsFallback")
+    @Retry(name = "${circuit-breaker.name.product-api}", fallbackMethod = "getSimilarProductIdsFallback")
+    public List<String> getSimilarProductIds(String productId) {
+        log.debug(logDebugSimilarIds, productId);
+        long start = System.nanoTime();
+        try {
+            return restClient.get()
+                    .uri(similarIdsUrl, productId)
+                    .exchange((request, response) -> {
+                        if (!response.getStatusCode().is2xxSuccessful()) {
+                            logErrorStatus(response.getStatusCode(), productId);
+                            if (!response.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND)) {
+                                throw new UpstreamStatusException(response.getStatusCode());
+                            }
+                            return Collections.<String>emptyList();
+                        }
+                        List<String> ids = response.bodyTo(new ParameterizedTypeReference<List<String>>() {});
+                        return ids != null ? ids : Collections.<String>emptyList();
+                    });
+        } catch (RestClientException e) {
+            errorLog.error(logErrorSimilarIds, e.getMessage());
+            throw e;
+        } finally {
+            hotKeyTracker.downstreamCall(productId, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Fallback method for getSimilarProductIds, passing the failure on so that it is not cached as an empty list
+     */
+    private List<String> getSimilarProductIdsFallback(String productId, Throwable throwable) throws Throwable {
+        errorLog.warn(logWarnCircuitBreaker, "getSimilarProductIds", throwable.getMessage());
+        throw throwable;
+    }
+
+    /**
+     * Get product detail for a given product ID
+     * @param productId Product ID to get details for
+     * @return Product detail or null if not found
+     * @throws UpstreamStatusException If the product API answered with an error status
+     */
+    @Cacheable(value = "productDetails", unless = "#result == null")
+    @CircuitBreaker(name = "${circuit-breaker.name.product-api}", fallbackMethod = "getProductDetailFallback")
+    @Retry(name = "${circuit-breaker.name.product-api}", fallbackMethod = "getProductDetailFallback")
+    public ProductDetail getProductDetail(String productId) {
+        log.debug(logDebugProductDetail, productId);
+        EntityTagCache.Validated validated = entityTagCache.get(productId);
+        long start = System.nanoTime();
+        try {
+            return restClient.get()
+                    .uri(productDetailUrl, productId)
+                    .headers(headers -> {
+                        if (validated != null) {
+                            headers.setIfNoneMatch(validated.eTag());
+                        }
+                    })
+                    .exchange((request, response) -> {
+                        if (validated != null && response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                            return validated.detail();
+                        }
+                        if (!response.getStatusCode().is2xxSuccessful()) {
+                            logErrorStatus(response.getStatusCode(), productId);
+                            if (!response.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND)) {
+                                throw new UpstreamStatusException(response.getStatusCode());
+                            }
+                            return null;
+                        }
+                        ProductDetail detail = response.bodyTo(ProductDetail.class);
+                        entityTagCache.put(productId, response.getHeaders().getETag(), detail);
+                        return detail;
+                    });
+        } catch (RestClientException e) {
+            errorLog.error(logErrorProductDetail, e.getMessage());
+            throw e;
+        } finally {
+            hotKeyTracker.downstreamCall(productId, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Log a non-successful answer of the product API, a 404 being an expected outcome
+     */
+    private void logErrorStatus(HttpStatusCode status, String productId) {
+        if (status.isSameCodeAs(HttpStatus.NOT_FOUND)) {
+            errorLog.warn(logProductNotFound, productId);
+        } else {
+            errorLog.error(logErrorUpstreamStatus, status, productId);
+        }
+    }
+
+    /**
+     * Fallback method for getProductDetail, passing the failure on so that it is not taken for a missing product
+     */
+    private ProductDetail getProductDetailFallback(String productId, Throwable throwable) throws Throwable {
+        errorLog.warn(logWarnCircuitBreaker, "getProductDetail", throwable.getMessage());
+        throw throwable;
+    }
+}
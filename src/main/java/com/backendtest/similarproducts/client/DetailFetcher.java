@@ -0,0 +1,17 @@
+package com.backendtest.similarproducts.client;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+import reactor.core.publisher.Mono;
+
+/**
+ * Strategy fetching product details from the product API, one request per product or batched
+ */
+public interface DetailFetcher {
+
+    /**
+     * Fetch a product detail from the product API
+     * @param productId Product ID to get details for
+     * @return Product detail, empty if the product does not exist, an error if it could not be fetched
+     */
+    Mono<ProductDetail> fetch(String productId);
+}
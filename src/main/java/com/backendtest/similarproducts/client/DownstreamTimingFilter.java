@@ -0,0 +1,159 @@
+package com.backendtest.similarproducts.client;
+
+import com.backendtest.similarproducts.logging.RateLimitedLogger;
+import com.backendtest.similarproducts.trace.TraceRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Times every outbound call by phase: {@code downstream.ttfb} until the response headers arrive
+ * (pool acquisition, connect, TLS and server time, broken down further by the Reactor Netty metrics),
+ * {@code downstream.body} while the body is read and decoded, and {@code downstream.total}.
+ * Timers are tagged by route template and status class; slow calls are also logged with their path.
+ * Every call is also handed to the {@link TraceRecorder}.
+ */
+@Slf4j
+@Component
+public class DownstreamTimingFilter implements ExchangeFilterFunction {
+
+    private static final String OTHER_ROUTE = "other";
+    private static final Duration[] BUCKETS = {
+            Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50), Duration.ofMillis(100),
+            Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofMillis(1000), Duration.ofMillis(2000)};
+
+    private record Route(Pattern pattern, String template) {
+    }
+
+    private record Timers(Timer ttfb, Timer body, Timer total) {
+    }
+
+    @Value("${log.message.warn-slow-downstream}")
+    private String logWarnSlowDownstream;
+
+    private final RateLimitedLogger slowCallLog = new RateLimitedLogger(log);
+
+    private final MeterRegistry meterRegistry;
+    private final TraceRecorder traceRecorder;
+    private final long slowThresholdNanos;
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, Timers> timers = new ConcurrentHashMap<>();
+
+    public DownstreamTimingFilter(
+            MeterRegistry meterRegistry,
+            TraceRecorder traceRecorder,
+            @Value("${api.product.similarids.url}") String similarIdsUrl,
+            @Value("${api.product.detail.url}") String productDetailUrl,
+            @Value("${api.product.batch.url:}") String batchUrl,
+            @Value("${cluster.peer-detail-path:/internal/peer/product/{productId}}") String peerDetailPath,
+            @Value("${webclient.timing.slow-threshold:500}") int slowThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.traceRecorder = traceRecorder;
+        this.slowThresholdNanos = Duration.ofMillis(slowThreshold).toNanos();
+        for (String url : List.of(similarIdsUrl, productDetailUrl, batchUrl, peerDetailPath)) {
+            if (url.isEmpty()) {
+                continue;
+            }
+            String template = url.replaceFirst("^[a-zA-Z][a-zA-Z0-9+.-]*://[^/]*", "").replaceFirst("\\?.*", "");
+            routes.add(new Route(Pattern.compile(template.replaceAll("\\{[^/]+}", "[^/]+")), template));
+        }
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            String path = request.url().getRawPath();
+            String route = route(path);
+            return next.exchange(request)
+                    .map(response -> {
+                        long headers = System.nanoTime();
+                        String status = statusClass(response.statusCode());
+                        Timers routeTimers = timers(route, status);
+                        routeTimers.ttfb().record(headers - start, TimeUnit.NANOSECONDS);
+                        // WebClient subscribes to the body again to release it if left unconsumed: time the first read only
+                        AtomicBoolean read = new AtomicBoolean();
+                        return response.mutate()
+                                .body(body -> body.doFinally(signal -> {
+                                    if (read.getAndSet(true)) {
+                                        return;
+                                    }
+                                    long end = System.nanoTime();
+                                    routeTimers.body().record(end - headers, TimeUnit.NANOSECONDS);
+                                    int code = response.statusCode().value();
+                                    recordTotal(routeTimers.total(), end - start, route, path, code, String.valueOf(code));
+                                }))
+                                .build();
+                    })
+                    .doOnError(error -> recordTotal(timers(route, "error").total(), System.nanoTime() - start,
+                            route, path, 0, error.getClass().getSimpleName()))
+                    .doOnCancel(() -> recordTotal(timers(route, "cancelled").total(), System.nanoTime() - start,
+                            route, path, 0, "cancelled"));
+        });
+    }
+
+    /**
+     * Route template of a request path, the tag value bounding the cardinality of the downstream metrics
+     * @param uri Request path, with or without query
+     * @return Path template of the matching configured route, or {@code other}
+     */
+    public String route(String uri) {
+        int query = uri.indexOf('?');
+        String path = query < 0 ? uri : uri.substring(0, query);
+        for (Route route : routes) {
+            if (route.pattern().matcher(path).matches()) {
+                return route.template();
+            }
+        }
+        return OTHER_ROUTE;
+    }
+
+    /**
+     * @param status HTTP status of the response, 0 if the call failed or was cancelled
+     * @param outcome Status or failure of the call, for the slow call log
+     */
+    private void recordTotal(Timer total, long elapsedNanos, String route, String path, int status, String outcome) {
+        traceRecorder.downstream(route, path, status, elapsedNanos);
+        total.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (elapsedNanos >= slowThresholdNanos) {
+            slowCallLog.warn(logWarnSlowDownstream, path, outcome, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+    }
+
+    private Timers timers(String route, String status) {
+        return timers.computeIfAbsent(route + ' ' + status, key -> new Timers(
+                timer("downstream.ttfb", "Time to the first byte of the downstream response", route, status),
+                timer("downstream.body", "Time reading the downstream response body", route, status),
+                timer("downstream.total", "Total time of the downstream call", route, status)));
+    }
+
+    private Timer timer(String name, String description, String route, String status) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("route", route)
+                .tag("status", status)
+                .serviceLevelObjectives(BUCKETS)
+                .register(meterRegistry);
+    }
+
+    private static String statusClass(HttpStatusCode status) {
+        return (status.value() / 100) + "xx";
+    }
+}
@@ -0,0 +1,56 @@
+package com.backendtest.similarproducts.client;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Last ETag returned by the product API for each product detail, kept longer than the detail cache
+ * so that reloading an expired or invalidated detail can be a conditional request answered with 304
+ */
+@Component
+public class EntityTagCache {
+
+    /**
+     * Product detail together with the ETag it was served with
+     */
+    public record Validated(String eTag, ProductDetail detail) {
+    }
+
+    private final Cache<String, Validated> validators;
+
+    public EntityTagCache(
+            @Value("${api.product.etag.maximum-size:25000}") int maximumSize,
+            @Value("${api.product.etag.expiration:3600}") int expirationSeconds) {
+        this.validators = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expirationSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @param productId Product ID
+     * @return Last validated detail of the product, or null if unknown
+     */
+    public Validated get(String productId) {
+        return validators.getIfPresent(productId);
+    }
+
+    /**
+     * Remember the detail of a product if the product API sent an ETag with it
+     * @param productId Product ID
+     * @param eTag ETag header of the response, possibly null
+     * @param detail Product detail
+     */
+    public void put(String productId, String eTag, ProductDetail detail) {
+        if (eTag != null && detail != null) {
+            validators.put(productId, new Validated(eTag, detail));
+        } else {
+            validators.invalidate(productId);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.backendtest.similarproducts.client;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Client fetching product details from the peer that owns them
+ */
+@Component
+public class PeerClient {
+
+    /**
+     * Header carrying {@code cluster.peer-token}, checked by the owner before serving a detail
+     */
+    public static final String PEER_TOKEN_HEADER = "X-Peer-Token";
+
+    private final WebClient webClient;
+    private final String peerDetailPath;
+    private final Duration peerTimeout;
+    private final String peerToken;
+
+    public PeerClient(
+            WebClient webClient,
+            @Value("${cluster.peer-detail-path:/internal/peer/product/{productId}}") String peerDetailPath,
+            @Value("${cluster.peer-timeout:500}") int peerTimeout,
+            @Value("${cluster.peer-token:}") String peerToken) {
+        this.webClient = webClient;
+        this.peerDetailPath = peerDetailPath;
+        this.peerTimeout = Duration.ofMillis(peerTimeout);
+        this.peerToken = peerToken;
+    }
+
+    /**
+     * Get product detail from its owner
+     * @param peer Base URL of the owning peer
+     * @param productId Product ID to get details for
+     * @return Product detail, empty if the owner does not know the product, or an error if the peer failed
+     */
+    public Mono<ProductDetail> getProductDetail(String peer, String productId) {
+        return webClient.get()
+                .uri(peer + peerDetailPath, productId)
+                .header(PEER_TOKEN_HEADER, peerToken)
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(ProductDetail.class);
+                    }
+                    if (response.statusCode().isSameCodeAs(HttpStatus.NOT_FOUND)) {
+                        return response.releaseBody().then(Mono.empty());
+                    }
+                    return response.releaseBody().then(Mono.error(new UpstreamStatusException(response.statusCode())));
+                })
+                .timeout(peerTimeout, Mono.error(() -> new UpstreamStatusException(HttpStatus.GATEWAY_TIMEOUT)));
+    }
+}
@@ -1,15 +1,20 @@
 package com.backendtest.similarproducts.client;
 
+import com.backendtest.similarproducts.cluster.PeerRouter;
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
+import com.backendtest.similarproducts.logging.RateLimitedLogger;
 import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.tuning.PerformanceSettings;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
@@ -23,7 +28,6 @@ import java.util.List;
 @Slf4j
 @Component
 public class ProductClient {
-    private final Duration requestTimeout;
     private final Duration cacheDuration;
     
     @Value("${log.message.similar-ids-debug}")
@@ -44,24 +48,48 @@ public class ProductClient {
     @Value("${log.message.error-product-detail}")
     private String logErrorProductDetail;
 
+    @Value("${log.message.warn-peer-fallback}")
+    private String logWarnPeerFallback;
+
+    @Value("${log.message.error-upstream-status}")
+    private String logErrorUpstreamStatus;
+
+    @Value("${log.message.warn-timeout-upstream}")
+    private String logWarnTimeoutUpstream;
+
+    private final RateLimitedLogger errorLog = new RateLimitedLogger(log);
+
     private final WebClient webClient;
+    private final PeerRouter peerRouter;
+    private final PeerClient peerClient;
+    private final DetailFetcher detailFetcher;
+    private final HotKeyTracker hotKeyTracker;
+    private final PerformanceSettings settings;
     private final String similarIdsUrl;
     private final String productDetailUrl;
     
 
     public ProductClient(
             WebClient webClient,
+            PeerRouter peerRouter,
+            PeerClient peerClient,
+            DetailFetcher detailFetcher,
+            HotKeyTracker hotKeyTracker,
+            PerformanceSettings settings,
             @Value("${api.product.similarids.url}") String similarIdsUrl,
             @Value("${api.product.detail.url}") String productDetailUrl,
-            @Value("${webclient.response-timeout:1500}") int responseTimeout,
             @Value("${cache.duration.minutes:10}") int cacheDurationMinutes,
             @Value("${circuit-breaker.name.product-api:productApi}") String circuitBreakerName,
             @Value("${cache.name.similar-ids:similarIds}") String cacheSimilarIds,
             @Value("${cache.name.product-details:productDetails}") String cacheProductDetails) {
         this.webClient = webClient;
+        this.peerRouter = peerRouter;
+        this.peerClient = peerClient;
+        this.detailFetcher = detailFetcher;
+        this.hotKeyTracker = hotKeyTracker;
+        this.settings = settings;
         this.similarIdsUrl = similarIdsUrl;
         this.productDetailUrl = productDetailUrl;
-        this.requestTimeout = Duration.ofMillis(responseTimeout);
         this.cacheDuration = Duration.ofMinutes(cacheDurationMinutes);
     }
 
@@ -75,63 +103,99 @@ public class ProductClient {
     @Retry(name = "${circuit-breaker.name.product-api}", fallbackMethod = "getSimilarProductIdsFallback")
     public Mono<List<String>> getSimilarProductIds(String productId) {
         log.debug(logDebugSimilarIds, productId);
-        return webClient.get()
+        return hotKeyTracker.trackDownstream(productId, webClient.get()
                 .uri(similarIdsUrl, productId)
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<String>>() {})
-                .timeout(requestTimeout)
-                .publishOn(Schedulers.boundedElastic())
-                .onErrorResume(WebClientResponseException.NotFound.class, e -> {
-                    log.warn(logProductNotFound, productId);
-                    return Mono.just(Collections.emptyList());
-                })
-                .onErrorResume(e -> {
-                    log.error(logErrorSimilarIds, e.getMessage());
-                    return Mono.just(Collections.emptyList());
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(new ParameterizedTypeReference<List<String>>() {});
+                    }
+                    logErrorStatus(response.statusCode(), productId);
+                    if (response.statusCode().isSameCodeAs(HttpStatus.NOT_FOUND)) {
+                        return response.releaseBody().thenReturn(Collections.<String>emptyList());
+                    }
+                    return response.releaseBody().then(Mono.<List<String>>error(new UpstreamStatusException(response.statusCode())));
                 })
+                .timeout(settings.getResponseTimeout(), Mono.error(() -> {
+                    errorLog.warn(logWarnTimeoutUpstream, similarIdsUrl, productId);
+                    return new UpstreamStatusException(HttpStatus.GATEWAY_TIMEOUT);
+                })))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnError(e -> !(e instanceof UpstreamStatusException), e -> errorLog.error(logErrorSimilarIds, e.getMessage()))
                 .cache(cacheDuration);
     }
 
     /**
-     * Fallback method for getSimilarProductIds
+     * Fallback method for getSimilarProductIds, passing the failure on so that it is not cached as an empty list
      */
     private Mono<List<String>> getSimilarProductIdsFallback(String productId, Throwable throwable) {
-        log.warn(logWarnCircuitBreaker, "getSimilarProductIds", throwable.getMessage());
-        return Mono.just(Collections.emptyList());
+        errorLog.warn(logWarnCircuitBreaker, "getSimilarProductIds", throwable.getMessage());
+        return Mono.error(throwable);
     }
 
     /**
-     * Get product detail for a given product ID
+     * Get product detail for a given product ID.
+     * When clustering is enabled and another node owns the product, the detail is fetched from that peer.
      * @param productId Product ID to get details for
      * @return Product detail
      */
-    @Cacheable(value = "productDetails")
+    @Cacheable(value = "productDetails", sync = true)
     @CircuitBreaker(name = "${circuit-breaker.name.product-api}", fallbackMethod = "getProductDetailFallback")
     @Retry(name = "${circuit-breaker.name.product-api}", fallbackMethod = "getProductDetailFallback")
     public Mono<ProductDetail> getProductDetail(String productId) {
         log.debug(logDebugProductDetail, productId);
-        return webClient.get()
-                .uri(productDetailUrl, productId)
-                .retrieve()
-                .bodyToMono(ProductDetail.class)
-                .timeout(requestTimeout)
+        return peerRouter.remoteOwner(productId)
+                .map(owner -> peerClient.getProductDetail(owner, productId)
+                        .onErrorResume(e -> {
+                            errorLog.warn(logWarnPeerFallback, owner, productId, e.getMessage());
+                            return fetchProductDetail(productId);
+                        }))
+                .orElseGet(() -> fetchProductDetail(productId));
+    }
+
+    /**
+     * Get product detail for a product owned by this node, on behalf of a peer.
+     * Shares the cache of {@link #getProductDetail(String)} but never forwards the request again.
+     * @param productId Product ID to get details for
+     * @return Product detail
+     */
+    @Cacheable(value = "productDetails", sync = true)
+    @CircuitBreaker(name = "${circuit-breaker.name.product-api}", fallbackMethod = "getProductDetailFallback")
+    @Retry(name = "${circuit-breaker.name.product-api}", fallbackMethod = "getProductDetailFallback")
+    public Mono<ProductDetail> getOwnedProductDetail(String productId) {
+        log.debug(logDebugProductDetail, productId);
+        return fetchProductDetail(productId);
+    }
+
+    /**
+     * Fetch a product detail from the product API through the configured detail fetcher
+     */
+    private Mono<ProductDetail> fetchProductDetail(String productId) {
+        return detailFetcher.fetch(productId)
+                .timeout(settings.getResponseTimeout(), Mono.error(() -> {
+                    errorLog.warn(logWarnTimeoutUpstream, productDetailUrl, productId);
+                    return new UpstreamStatusException(HttpStatus.GATEWAY_TIMEOUT);
+                }))
                 .publishOn(Schedulers.boundedElastic())
-                .onErrorResume(WebClientResponseException.NotFound.class, e -> {
-                    log.warn(logProductNotFound, productId);
-                    return Mono.empty();
-                })
-                .onErrorResume(e -> {
-                    log.error(logErrorProductDetail, e.getMessage());
-                    return Mono.empty();
-                })
+                .doOnError(e -> !(e instanceof UpstreamStatusException), e -> errorLog.error(logErrorProductDetail, e.getMessage()))
                 .cache(cacheDuration);
     }
 
     /**
-     * Fallback method for getProductDetail
+     * Log a non-successful answer of the product API, a 404 being an expected outcome
+     */
+    private void logErrorStatus(HttpStatusCode status, String productId) {
+        if (status.isSameCodeAs(HttpStatus.NOT_FOUND)) {
+            errorLog.warn(logProductNotFound, productId);
+        } else {
+            errorLog.error(logErrorUpstreamStatus, status, productId);
+        }
+    }
+
+    /**
+     * Fallback method for getProductDetail, passing the failure on so that it is not taken for a missing product
      */
     private Mono<ProductDetail> getProductDetailFallback(String productId, Throwable throwable) {
-        log.warn(logWarnCircuitBreaker, "getProductDetail", throwable.getMessage());
-        return Mono.empty();
+        errorLog.warn(logWarnCircuitBreaker, "getProductDetail", throwable.getMessage());
+        return Mono.error(throwable);
     }
 } 
\ No newline at end of file
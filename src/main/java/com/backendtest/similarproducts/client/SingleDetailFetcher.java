@@ -0,0 +1,81 @@
+package com.backendtest.similarproducts.client;
+
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
+import com.backendtest.similarproducts.logging.RateLimitedLogger;
+import com.backendtest.similarproducts.model.ProductDetail;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Fetches each product detail with its own {@code GET}, as a conditional request when its ETag is known
+ */
+@Slf4j
+@Component
+public class SingleDetailFetcher implements DetailFetcher {
+
+    @Value("${log.message.product-not-found}")
+    private String logProductNotFound;
+
+    @Value("${log.message.error-upstream-status}")
+    private String logErrorUpstreamStatus;
+
+    private final RateLimitedLogger errorLog = new RateLimitedLogger(log);
+
+    private final WebClient webClient;
+    private final EntityTagCache entityTagCache;
+    private final HotKeyTracker hotKeyTracker;
+    private final String productDetailUrl;
+
+    public SingleDetailFetcher(
+            WebClient webClient,
+            EntityTagCache entityTagCache,
+            HotKeyTracker hotKeyTracker,
+            @Value("${api.product.detail.url}") String productDetailUrl) {
+        this.webClient = webClient;
+        this.entityTagCache = entityTagCache;
+        this.hotKeyTracker = hotKeyTracker;
+        this.productDetailUrl = productDetailUrl;
+    }
+
+    @Override
+    public Mono<ProductDetail> fetch(String productId) {
+        EntityTagCache.Validated validated = entityTagCache.get(productId);
+        return hotKeyTracker.trackDownstream(productId, webClient.get()
+                .uri(productDetailUrl, productId)
+                .headers(headers -> {
+                    if (validated != null) {
+                        headers.setIfNoneMatch(validated.eTag());
+                    }
+                })
+                .exchangeToMono(response -> {
+                    if (validated != null && response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                        return response.releaseBody().thenReturn(validated.detail());
+                    }
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        logErrorStatus(response.statusCode(), productId);
+                        return response.statusCode().isSameCodeAs(HttpStatus.NOT_FOUND)
+                                ? response.releaseBody().then(Mono.<ProductDetail>empty())
+                                : response.releaseBody().then(Mono.<ProductDetail>error(new UpstreamStatusException(response.statusCode())));
+                    }
+                    String eTag = response.headers().asHttpHeaders().getETag();
+                    return response.bodyToMono(ProductDetail.class)
+                            .doOnNext(detail -> entityTagCache.put(productId, eTag, detail));
+                }));
+    }
+
+    /**
+     * Log a non-successful answer of the product API, a 404 being an expected outcome
+     */
+    private void logErrorStatus(HttpStatusCode status, String productId) {
+        if (status.isSameCodeAs(HttpStatus.NOT_FOUND)) {
+            errorLog.warn(logProductNotFound, productId);
+        } else {
+            errorLog.error(logErrorUpstreamStatus, status, productId);
+        }
+    }
+}
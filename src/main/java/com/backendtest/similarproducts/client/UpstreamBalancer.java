@@ -0,0 +1,243 @@
+package com.backendtest.similarproducts.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side balancing of the product API calls across its replicas, bypassing the central load balancer.
+ * Calls to the host of {@code api.product.detail.url} are sent to one of {@code api.product.instances}, chosen by
+ * power of two choices: of two random instances, the one with the lowest cost, its latency EWMA times its calls
+ * in flight plus one. A failed call (5xx or transport error) counts at least the failure penalty in the EWMA, so that
+ * an instance failing fast does not attract the traffic. An instance failing a number of consecutive calls is ejected for a
+ * time growing with its ejections, never more than a share of the instances at once, and comes back with its
+ * latency forgotten, so that it is probed again like a new instance instead of keeping the penalty. Reactor Netty keeps a
+ * connection pool per instance. The {@code upstream.instance.*} metrics are tagged by instance.
+ */
+@Slf4j
+@Component
+public class UpstreamBalancer implements ExchangeFilterFunction {
+
+    private final URI origin;
+    private final List<Instance> instances = new ArrayList<>();
+    private final long failurePenaltyNanos;
+    private final int consecutiveFailures;
+    private final long baseEjectionNanos;
+    private final long maxEjectionNanos;
+    private final int maxEjectionPercent;
+
+    @Value("${log.message.warn-instance-ejected}")
+    private String logWarnInstanceEjected;
+
+    public UpstreamBalancer(
+            MeterRegistry meterRegistry,
+            @Value("${api.product.detail.url}") String productDetailUrl,
+            @Value("${api.product.instances:}") String[] instances,
+            @Value("${api.product.balancer.ewma-alpha:0.3}") double ewmaAlpha,
+            @Value("${api.product.balancer.failure-penalty:1000}") int failurePenalty,
+            @Value("${api.product.balancer.ejection.consecutive-failures:5}") int consecutiveFailures,
+            @Value("${api.product.balancer.ejection.base-time:10000}") int baseEjectionTime,
+            @Value("${api.product.balancer.ejection.max-time:300000}") int maxEjectionTime,
+            @Value("${api.product.balancer.ejection.max-percent:50}") int maxEjectionPercent) {
+        this.origin = URI.create(productDetailUrl.replaceAll("[{}]", ""));
+        this.failurePenaltyNanos = Duration.ofMillis(failurePenalty).toNanos();
+        this.consecutiveFailures = consecutiveFailures;
+        this.baseEjectionNanos = Duration.ofMillis(baseEjectionTime).toNanos();
+        this.maxEjectionNanos = Duration.ofMillis(maxEjectionTime).toNanos();
+        this.maxEjectionPercent = maxEjectionPercent;
+        Arrays.stream(instances).map(String::trim).filter(instance -> !instance.isEmpty())
+                .map(instance -> new Instance(URI.create(instance), ewmaAlpha, meterRegistry))
+                .forEach(this.instances::add);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (instances.isEmpty() || !sameOrigin(request.url(), origin)) {
+            return next.exchange(request);
+        }
+        return Mono.defer(() -> {
+            Instance instance = choose();
+            URI url = UriComponentsBuilder.fromUri(request.url())
+                    .scheme(instance.base.getScheme())
+                    .host(instance.base.getHost())
+                    .port(instance.base.getPort())
+                    .build(true)
+                    .toUri();
+            long start = System.nanoTime();
+            instance.inFlight.incrementAndGet();
+            AtomicBoolean done = new AtomicBoolean();
+            return next.exchange(ClientRequest.from(request).url(url).build())
+                    .doOnNext(response -> {
+                        if (done.compareAndSet(false, true)) {
+                            complete(instance, System.nanoTime() - start, !response.statusCode().is5xxServerError());
+                        }
+                    })
+                    .doOnError(error -> {
+                        if (done.compareAndSet(false, true)) {
+                            complete(instance, System.nanoTime() - start, false);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (done.compareAndSet(false, true)) {
+                            instance.inFlight.decrementAndGet();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Power of two choices among the instances not ejected, or among all of them if every one is ejected
+     */
+    private Instance choose() {
+        long now = System.nanoTime();
+        List<Instance> available = new ArrayList<>(instances.size());
+        for (Instance instance : instances) {
+            if (!instance.isEjected(now)) {
+                instance.readmit();
+                available.add(instance);
+            }
+        }
+        if (available.isEmpty()) {
+            available = instances;
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Instance a = available.get(first);
+        Instance b = available.get(second);
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    private void complete(Instance instance, long elapsedNanos, boolean success) {
+        instance.inFlight.decrementAndGet();
+        if (success) {
+            instance.observe(elapsedNanos);
+            instance.failures.set(0);
+            return;
+        }
+        instance.observe(Math.max(elapsedNanos, failurePenaltyNanos));
+        if (instance.failures.incrementAndGet() >= consecutiveFailures) {
+            eject(instance);
+        }
+    }
+
+    private synchronized void eject(Instance instance) {
+        long now = System.nanoTime();
+        if (instance.isEjected(now)) {
+            return;
+        }
+        long ejected = instances.stream().filter(other -> other.isEjected(now)).count();
+        if ((ejected + 1) * 100 > (long) maxEjectionPercent * instances.size()) {
+            return;
+        }
+        long duration = Math.min(maxEjectionNanos, baseEjectionNanos * ((long) instance.ejections.count() + 1));
+        instance.ejectedUntil = now + duration;
+        instance.failures.set(0);
+        instance.readmitted.set(false);
+        instance.ejections.increment();
+        log.warn(logWarnInstanceEjected, instance.base, TimeUnit.NANOSECONDS.toMillis(duration), consecutiveFailures);
+    }
+
+    private static boolean sameOrigin(URI url, URI origin) {
+        return Objects.equals(url.getScheme(), origin.getScheme())
+                && Objects.equals(url.getHost(), origin.getHost())
+                && url.getPort() == origin.getPort();
+    }
+
+    /**
+     * Replica of the product API and its balancing state
+     */
+    private static final class Instance {
+        private final URI base;
+        private final double ewmaAlpha;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong ewmaBits = new AtomicLong(Double.doubleToLongBits(-1));
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicBoolean readmitted = new AtomicBoolean(true);
+        private final Counter ejections;
+        private volatile long ejectedUntil = System.nanoTime();
+
+        private Instance(URI base, double ewmaAlpha, MeterRegistry meterRegistry) {
+            this.base = base;
+            this.ewmaAlpha = ewmaAlpha;
+            String tag = base.toString();
+            Gauge.builder("upstream.instance.in.flight", inFlight, AtomicInteger::get)
+                    .description("Calls in flight to the product API instance")
+                    .tag("instance", tag)
+                    .register(meterRegistry);
+            Gauge.builder("upstream.instance.latency.ewma", this, instance -> Math.max(0, instance.ewma()) / 1e9)
+                    .description("Exponentially weighted moving average of the call latency of the instance, in seconds")
+                    .tag("instance", tag)
+                    .register(meterRegistry);
+            Gauge.builder("upstream.instance.ejected", this, instance -> instance.isEjected(System.nanoTime()) ? 1 : 0)
+                    .description("Whether the instance is ejected from the balancing after consecutive failures")
+                    .tag("instance", tag)
+                    .register(meterRegistry);
+            this.ejections = Counter.builder("upstream.instance.ejections")
+                    .description("Ejections of the instance after consecutive failures")
+                    .tag("instance", tag)
+                    .register(meterRegistry);
+        }
+
+        private boolean isEjected(long now) {
+            return now - ejectedUntil < 0;
+        }
+
+        /**
+         * Forget the latency of an instance back from an ejection, once per ejection
+         */
+        private void readmit() {
+            if (readmitted.compareAndSet(false, true)) {
+                ewmaBits.set(Double.doubleToLongBits(-1));
+            }
+        }
+
+        /**
+         * Expected cost of one more call: an instance without latency yet is tried first
+         */
+        private double cost() {
+            return Math.max(0, ewma()) * (inFlight.get() + 1);
+        }
+
+        private double ewma() {
+            return Double.longBitsToDouble(ewmaBits.get());
+        }
+
+        private void observe(long elapsedNanos) {
+            long current;
+            double updated;
+            do {
+                current = ewmaBits.get();
+                double ewma = Double.longBitsToDouble(current);
+                updated = ewma < 0 ? elapsedNanos : ewma + ewmaAlpha * (elapsedNanos - ewma);
+            } while (!ewmaBits.compareAndSet(current, Double.doubleToLongBits(updated)));
+        }
+    }
+}
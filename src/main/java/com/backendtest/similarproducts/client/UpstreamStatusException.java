@@ -0,0 +1,21 @@
+package com.backendtest.similarproducts.client;
+
+import org.springframework.http.HttpStatusCode;
+
+/**
+ * Unexpected status answered by an upstream service. Stackless: it only signals the status
+ * to the error handling of a reactive chain, where a stack trace would be pure overhead.
+ */
+public class UpstreamStatusException extends RuntimeException {
+
+    private final transient HttpStatusCode statusCode;
+
+    public UpstreamStatusException(HttpStatusCode statusCode) {
+        super(statusCode.toString(), null, false, false);
+        this.statusCode = statusCode;
+    }
+
+    public HttpStatusCode getStatusCode() {
+        return statusCode;
+    }
+}
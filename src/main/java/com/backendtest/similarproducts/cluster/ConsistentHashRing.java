@@ -0,0 +1,74 @@
+package com.backendtest.similarproducts.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable consistent hash ring mapping keys to peers, with virtual nodes to even out the distribution
+ */
+public class ConsistentHashRing {
+
+    private final long[] points;
+    private final String[] owners;
+    private final List<String> peers;
+
+    public ConsistentHashRing(Collection<String> peers, int virtualNodes) {
+        this.peers = List.copyOf(peers);
+        int size = this.peers.size() * virtualNodes;
+        long[][] ring = new long[size][2];
+        int index = 0;
+        for (int peer = 0; peer < this.peers.size(); peer++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                ring[index][0] = hash(this.peers.get(peer) + "#" + replica);
+                ring[index][1] = peer;
+                index++;
+            }
+        }
+        Arrays.sort(ring, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = ring[i][0];
+            owners[i] = this.peers.get((int) ring[i][1]);
+        }
+    }
+
+    /**
+     * Peer owning a key: the first virtual node clockwise from the key hash
+     * @param key Key to place on the ring
+     * @return Owning peer, or null if the ring is empty
+     */
+    public String ownerOf(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    /**
+     * 64-bit FNV-1a followed by the MurmurHash3 finalizer for a good spread of short keys
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,15 @@
+package com.backendtest.similarproducts.cluster;
+
+import java.util.List;
+
+/**
+ * Source of the cluster membership, e.g. static configuration, DNS or the Kubernetes endpoints API
+ */
+public interface PeerDiscovery {
+
+    /**
+     * Current members of the cluster, including this node
+     * @return Base URLs of the peers, such as {@code http://10.0.0.12:5001}
+     */
+    List<String> discoverPeers();
+}
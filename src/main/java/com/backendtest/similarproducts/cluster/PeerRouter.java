@@ -0,0 +1,97 @@
+package com.backendtest.similarproducts.cluster;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decides which node of the cluster owns a product ID, groupcache style:
+ * each detail is loaded from downstream by its owner only, other nodes ask the owner.
+ */
+@Slf4j
+@Component
+public class PeerRouter {
+
+    @Value("${log.message.cluster-membership}")
+    private String logClusterMembership;
+
+    @Value("${log.message.error-cluster-discovery}")
+    private String logErrorClusterDiscovery;
+
+    private final boolean enabled;
+    private final String self;
+    private final int virtualNodes;
+    private final Duration refreshInterval;
+    private final PeerDiscovery peerDiscovery;
+    private final AtomicReference<ConsistentHashRing> ring = new AtomicReference<>();
+    private Disposable refresher;
+
+    public PeerRouter(
+            PeerDiscovery peerDiscovery,
+            @Value("${cluster.enabled:false}") boolean enabled,
+            @Value("${cluster.self:}") String self,
+            @Value("${cluster.virtual-nodes:100}") int virtualNodes,
+            @Value("${cluster.refresh-interval:10000}") int refreshInterval) {
+        this.peerDiscovery = peerDiscovery;
+        this.enabled = enabled;
+        this.self = self;
+        this.virtualNodes = virtualNodes;
+        this.refreshInterval = Duration.ofMillis(refreshInterval);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        refresh();
+        refresher = Flux.interval(refreshInterval, refreshInterval)
+                .subscribe(tick -> refresh());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (refresher != null) {
+            refresher.dispose();
+        }
+    }
+
+    /**
+     * Rebuild the ring when the membership changed
+     */
+    void refresh() {
+        try {
+            List<String> peers = peerDiscovery.discoverPeers();
+            ConsistentHashRing current = ring.get();
+            if (current == null || !current.getPeers().equals(peers)) {
+                ring.set(new ConsistentHashRing(peers, virtualNodes));
+                log.info(logClusterMembership, peers);
+            }
+        } catch (RuntimeException e) {
+            log.error(logErrorClusterDiscovery, e.getMessage());
+        }
+    }
+
+    /**
+     * Peer owning a product, when it is not this node
+     * @param productId Product ID
+     * @return Base URL of the owning peer, or empty if this node owns it or clustering is disabled
+     */
+    public Optional<String> remoteOwner(String productId) {
+        ConsistentHashRing current = ring.get();
+        if (current == null) {
+            return Optional.empty();
+        }
+        String owner = current.ownerOf(productId);
+        return owner == null || owner.equals(self) ? Optional.empty() : Optional.of(owner);
+    }
+}
@@ -0,0 +1,20 @@
+package com.backendtest.similarproducts.cluster;
+
+import java.util.List;
+
+/**
+ * Cluster membership from the {@code cluster.peers} property
+ */
+public class StaticPeerDiscovery implements PeerDiscovery {
+
+    private final List<String> peers;
+
+    public StaticPeerDiscovery(List<String> peers) {
+        this.peers = List.copyOf(peers);
+    }
+
+    @Override
+    public List<String> discoverPeers() {
+        return peers;
+    }
+}
@@ -1,7 +1,23 @@
 package com.backendtest.similarproducts.config;
 
+import com.backendtest.similarproducts.cache.CacheMissRatioCurves;
+import com.backendtest.similarproducts.cache.L2Cache;
+import com.backendtest.similarproducts.cache.L2CacheCodec;
+import com.backendtest.similarproducts.cache.MissRatioCurve;
+import com.backendtest.similarproducts.cache.SampledCaffeineCache;
+import com.backendtest.similarproducts.cache.TwoLevelCacheManager;
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.service.SimilarProductsIndex;
+import com.backendtest.similarproducts.tuning.PerformanceSettings;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.github.benmanes.caffeine.cache.AsyncCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
@@ -9,22 +25,21 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Enhanced cache configuration using Caffeine for better performance
+ * Enhanced cache configuration using Caffeine for better performance. Each local cache has its own
+ * size and expiration, tunable at runtime as {@code cache.<cache>.maximum-size} and
+ * {@code cache.<cache>.expiration}, and its lookups feed the miss ratio curve estimating its hit ratio
+ * at other sizes.
  */
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
-    @Value("${cache.expiration:600}")
-    private int cacheExpiration;
-
-    @Value("${cache.maximum-size:25000}")
-    private int cacheMaximumSize;
-    
     @Value("${cache.initial-capacity:1000}")
     private int cacheInitialCapacity;
     
@@ -43,35 +58,148 @@ public class CacheConfig {
     @Value("${cache.name.similar-ids:similarIds}")
     private String cacheSimilarIds;
     
-    @Value("${cache.name.product-detail-optimized:productDetailOptimized}")
-    private String cacheProductDetailOptimized;
-    
+    @Value("${cache.similar-products.maximum-size:${cache.maximum-size:25000}}")
+    private int similarProductsMaximumSize;
+
+    @Value("${cache.similar-products.expiration:${cache.expiration:600}}")
+    private int similarProductsExpiration;
+
+    @Value("${cache.similar-products.idle-expiration:0}")
+    private int similarProductsIdleExpiration;
+
+    @Value("${cache.product-details.maximum-size:${cache.maximum-size:25000}}")
+    private int productDetailsMaximumSize;
+
+    @Value("${cache.product-details.expiration:${cache.expiration:600}}")
+    private int productDetailsExpiration;
+
+    @Value("${cache.product-details.idle-expiration:0}")
+    private int productDetailsIdleExpiration;
+
+    @Value("${cache.similar-ids.maximum-size:${cache.maximum-size:25000}}")
+    private int similarIdsMaximumSize;
+
+    @Value("${cache.similar-ids.expiration:${cache.expiration:600}}")
+    private int similarIdsExpiration;
+
+    @Value("${cache.similar-ids.idle-expiration:0}")
+    private int similarIdsIdleExpiration;
+
     @Value("${cache.name.short-lived:shortLivedCache}")
     private String cacheShortLived;
 
+    @Value("${cache.l2.key-prefix:similarproducts:}")
+    private String l2KeyPrefix;
+
+    @Value("${cache.l2.expiration:${cache.expiration:600}}")
+    private int l2Expiration;
+
+    @Value("${cache.l2.timeout:50}")
+    private int l2Timeout;
+
     /**
-     * Create a cache manager with Caffeine for better performance
+     * Create a cache manager with Caffeine for better performance,
+     * backed by the shared L2 tier when one is configured. The invalidation index follows the tuned
+     * policy of the caches it was sized from.
      * @return CacheManager
      */
     @Bean
     @Primary
-    public CacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        cacheManager.setCacheNames(Arrays.asList(
-            cacheSimilarProducts,
-            cacheProductDetails,
-            cacheSimilarIds,
-            cacheProductDetailOptimized
-        ));
+    public CacheManager cacheManager(ObjectProvider<L2Cache> l2Cache, ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry, PerformanceSettings settings,
+                                     CacheMissRatioCurves missRatioCurves, SimilarProductsIndex similarProductsIndex) {
+        CaffeineCacheManager localCacheManager = localCacheManager(settings, missRatioCurves);
+        settings.onChange("cache.product-details.maximum-size", similarProductsIndex::resize);
+        settings.onChange("cache.similar-products.expiration",
+                seconds -> similarProductsIndex.expire(Duration.ofSeconds(seconds)));
+        L2Cache sharedCache = l2Cache.getIfAvailable();
+        if (sharedCache == null) {
+            return localCacheManager;
+        }
+        return new TwoLevelCacheManager(
+                localCacheManager,
+                sharedCache,
+                l2CacheCodec(objectMapper),
+                l2KeyPrefix,
+                Duration.ofSeconds(l2Expiration),
+                Duration.ofMillis(l2Timeout),
+                meterRegistry);
+    }
+
+    /**
+     * Codec of the values stored in the shared tier, one value type per cache
+     */
+    private L2CacheCodec l2CacheCodec(ObjectMapper objectMapper) {
+        TypeFactory typeFactory = objectMapper.getTypeFactory();
+        JavaType productDetail = typeFactory.constructType(ProductDetail.class);
+        return new L2CacheCodec(objectMapper, Map.of(
+                cacheSimilarProducts, typeFactory.constructCollectionType(List.class, productDetail),
+                cacheProductDetails, productDetail,
+                cacheSimilarIds, typeFactory.constructCollectionType(List.class, String.class)));
+    }
+
+    private CaffeineCacheManager localCacheManager(PerformanceSettings settings, CacheMissRatioCurves missRatioCurves) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name, AsyncCache<Object, Object> cache) {
+                MissRatioCurve curve = missRatioCurves.curves().get(name);
+                return curve != null
+                        ? new SampledCaffeineCache(name, cache, isAllowNullValues(), curve)
+                        : super.adaptCaffeineCache(name, cache);
+            }
+        };
         cacheManager.setAsyncCacheMode(true);
-        cacheManager.setCaffeine(Caffeine.newBuilder()
-                .expireAfterWrite(cacheExpiration, TimeUnit.SECONDS)
-                .maximumSize(cacheMaximumSize)
-                .initialCapacity(cacheInitialCapacity)
-                .recordStats());
+        cacheManager.setCacheNames(List.of());
+        register(cacheManager, settings, missRatioCurves, cacheSimilarProducts, "similar-products",
+                similarProductsMaximumSize, similarProductsExpiration, similarProductsIdleExpiration);
+        register(cacheManager, settings, missRatioCurves, cacheProductDetails, "product-details",
+                productDetailsMaximumSize, productDetailsExpiration, productDetailsIdleExpiration);
+        register(cacheManager, settings, missRatioCurves, cacheSimilarIds, "similar-ids",
+                similarIdsMaximumSize, similarIdsExpiration, similarIdsIdleExpiration);
         
         return cacheManager;
     }
+
+    /**
+     * Build a local cache with its own policy, make its size and expiration tunable and estimate its miss
+     * ratio curve. The tuning listeners resize the cache and change its TTL in place, keeping its content.
+     * @param property Property prefix of the cache policy, below {@code cache.}
+     * @param idleExpiration Seconds an entry lives without being read, 0 to expire only after write
+     */
+    private void register(CaffeineCacheManager cacheManager, PerformanceSettings settings,
+                          CacheMissRatioCurves missRatioCurves, String cacheName, String property,
+                          int maximumSize, int expiration, int idleExpiration) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(expiration, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .initialCapacity(Math.min(cacheInitialCapacity, maximumSize))
+                .recordStats();
+        if (idleExpiration > 0) {
+            builder.expireAfterAccess(idleExpiration, TimeUnit.SECONDS);
+        }
+        AsyncCache<Object, Object> cache = builder.buildAsync();
+        MissRatioCurve curve = missRatioCurves.register(cacheName, maximumSize,
+                Duration.ofSeconds(expiration), Duration.ofSeconds(idleExpiration));
+        cacheManager.registerCustomCache(cacheName, cache);
+
+        String sizeSetting = "cache." + property + ".maximum-size";
+        String expirationSetting = "cache." + property + ".expiration";
+        settings.register(sizeSetting, maximumSize, 0, 10_000_000);
+        settings.register(expirationSetting, expiration, 1, 86400);
+        settings.onChange(sizeSetting, size -> {
+            cache.synchronous().policy().eviction().ifPresent(eviction -> eviction.setMaximum(size));
+            if (curve != null) {
+                curve.resize(size);
+            }
+        });
+        settings.onChange(expirationSetting, seconds -> {
+            cache.synchronous().policy().expireAfterWrite()
+                    .ifPresent(expiry -> expiry.setExpiresAfter(Duration.ofSeconds(seconds)));
+            if (curve != null) {
+                curve.expire(Duration.ofSeconds(seconds));
+            }
+        });
+    }
     
     /**
      * Create a separate cache manager for short-lived caches
@@ -0,0 +1,29 @@
+package com.backendtest.similarproducts.config;
+
+import com.backendtest.similarproducts.cluster.PeerDiscovery;
+import com.backendtest.similarproducts.cluster.StaticPeerDiscovery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+
+/**
+ * Configuration of the peer-to-peer cache ownership across replicas
+ */
+@Configuration
+public class ClusterConfig {
+
+    /**
+     * Static membership from {@code cluster.peers}, replaced by declaring any other {@link PeerDiscovery} bean
+     */
+    @Bean
+    @ConditionalOnMissingBean(PeerDiscovery.class)
+    public PeerDiscovery staticPeerDiscovery(@Value("${cluster.peers:}") String[] peers) {
+        return new StaticPeerDiscovery(Arrays.stream(peers)
+                .map(String::trim)
+                .filter(peer -> !peer.isEmpty())
+                .toList());
+    }
+}
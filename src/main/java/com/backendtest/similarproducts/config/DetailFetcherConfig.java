@@ -0,0 +1,39 @@
+package com.backendtest.similarproducts.config;
+
+import com.backendtest.similarproducts.client.BatchingDetailFetcher;
+import com.backendtest.similarproducts.client.DetailFetcher;
+import com.backendtest.similarproducts.client.SingleDetailFetcher;
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the product detail fetching: single requests by default, micro-batched on demand
+ */
+@Configuration
+public class DetailFetcherConfig {
+
+    /**
+     * Batching fetcher used instead of the single one when {@code api.product.batch.enabled} is set
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "api.product.batch.enabled", havingValue = "true")
+    public DetailFetcher batchingDetailFetcher(
+            WebClient webClient,
+            SingleDetailFetcher singleDetailFetcher,
+            HotKeyTracker hotKeyTracker,
+            @Value("${api.product.batch.url}") String batchUrl,
+            @Value("${api.product.batch.max-size:32}") int maxBatchSize,
+            @Value("${api.product.batch.window:2}") int window,
+            @Value("${log.message.warn-batch-unsupported}") String logWarnBatchUnsupported) {
+        return new BatchingDetailFetcher(webClient, singleDetailFetcher, hotKeyTracker,
+                batchUrl, maxBatchSize, Duration.ofMillis(window), logWarnBatchUnsupported);
+    }
+}
@@ -0,0 +1,50 @@
+package com.backendtest.similarproducts.config;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.model.ProductDetailProjection;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Jackson configuration allowing responses to write only some fields of the product details, in JSON
+ * and in the binary Smile and CBOR encodings
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Attach the projection filter to the product details, serializing every field unless a response
+     * provides its own filter
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer productDetailProjectionCustomizer() {
+        return builder -> builder
+                .mixIn(ProductDetail.class, ProductDetailProjection.class)
+                .filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    /**
+     * Smile converter built from the customized builder, replacing the Spring MVC default that ignores
+     * the projection filter. It keeps its place after the JSON converter.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    /**
+     * CBOR converter built from the customized builder, replacing the Spring MVC default
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
@@ -0,0 +1,65 @@
+package com.backendtest.similarproducts.config;
+
+import com.backendtest.similarproducts.cache.InMemoryL2Cache;
+import com.backendtest.similarproducts.cache.L2Cache;
+import com.backendtest.similarproducts.cache.RedisL2Cache;
+import com.backendtest.similarproducts.cache.TwoLevelCache;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.actuate.metrics.cache.CaffeineCacheMeterBinderProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the shared L2 cache tier, selected with {@code cache.l2.type}:
+ * {@code none} (default), {@code memory} (embedded stand-in) or {@code redis}
+ */
+@Configuration
+public class L2CacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "cache.l2.type", havingValue = "memory")
+    public L2Cache inMemoryL2Cache() {
+        return new InMemoryL2Cache();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "cache.l2.type", havingValue = "redis")
+    public RedisClient redisClient(@Value("${cache.l2.redis.url:redis://localhost:6379}") String redisUrl) {
+        return RedisClient.create(redisUrl);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "cache.l2.type", havingValue = "redis")
+    public StatefulRedisConnection<byte[], byte[]> redisConnection(RedisClient redisClient) {
+        return redisClient.connect(ByteArrayCodec.INSTANCE);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "cache.l2.type", havingValue = "redis")
+    public StatefulRedisPubSubConnection<byte[], byte[]> redisPubSubConnection(RedisClient redisClient) {
+        return redisClient.connectPubSub(ByteArrayCodec.INSTANCE);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "cache.l2.type", havingValue = "redis")
+    public L2Cache redisL2Cache(StatefulRedisConnection<byte[], byte[]> redisConnection,
+                                StatefulRedisPubSubConnection<byte[], byte[]> redisPubSubConnection,
+                                @Value("${cache.l2.redis.eviction-channel:similarproducts:evictions}") String evictionChannel) {
+        return new RedisL2Cache(redisConnection, redisPubSubConnection, evictionChannel);
+    }
+
+    /**
+     * Keep the Caffeine statistics of the local tier exported when it is wrapped in a two-level cache
+     */
+    @Bean
+    public CacheMeterBinderProvider<TwoLevelCache> twoLevelCacheMeterBinderProvider() {
+        CaffeineCacheMeterBinderProvider caffeineProvider = new CaffeineCacheMeterBinderProvider();
+        return (cache, tags) -> caffeineProvider.getMeterBinder(cache.getLocal(), tags);
+    }
+}
@@ -0,0 +1,42 @@
+package com.backendtest.similarproducts.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Configuration for the blocking RestClient used by the virtual-thread execution mode
+ */
+@Configuration
+@ConditionalOnProperty(name = "service.execution-mode", havingValue = "virtual-threads")
+public class RestClientConfig {
+
+    @Value("${webclient.connect-timeout:1000}")
+    private int connectTimeout;
+
+    @Value("${webclient.response-timeout:2000}")
+    private int responseTimeout;
+
+    @Bean
+    public RestClient restClient(RestClient.Builder builder) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(responseTimeout));
+
+        return builder
+                .requestFactory(requestFactory)
+                .build();
+    }
+}
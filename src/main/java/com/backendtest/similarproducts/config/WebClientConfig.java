@@ -1,5 +1,12 @@
 package com.backendtest.similarproducts.config;
 
+import com.backendtest.similarproducts.client.DownstreamTimingFilter;
+import com.backendtest.similarproducts.client.UpstreamBalancer;
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.tuning.PerformanceSettings;
+import com.backendtest.similarproducts.tuning.TunableClientHttpConnector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
@@ -7,16 +14,18 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
 import reactor.netty.http.client.HttpClient;
 import reactor.netty.resources.ConnectionProvider;
 import reactor.netty.resources.LoopResources;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Configuration for WebClient with optimal performance settings
@@ -24,12 +33,6 @@ import java.util.concurrent.TimeUnit;
 @Configuration
 public class WebClientConfig {
     
-    @Value("${webclient.max-connections:1000}")
-    private int maxConnections;
-    
-    @Value("${webclient.acquisition-timeout:1500}")
-    private int acquisitionTimeout;
-    
     @Value("${webclient.max-idle-time:15000}")
     private int maxIdleTime;
     
@@ -39,9 +42,6 @@ public class WebClientConfig {
     @Value("${webclient.connect-timeout:1000}")
     private int connectTimeout;
     
-    @Value("${webclient.response-timeout:2000}")
-    private int responseTimeout;
-    
     @Value("${webclient.read-timeout:2000}")
     private int readTimeout;
     
@@ -62,62 +62,95 @@ public class WebClientConfig {
     
     @Value("${webclient.event-loop-name:webclient-event-loop}")
     private String eventLoopName;
-    
-    @Value("${webclient.product-path-indicator:product}")
-    private String productPathIndicator;
-
-    @Bean
-    public WebClient webClient() {
-        ConnectionProvider provider = ConnectionProvider.builder(connectionProviderName)
-                .maxConnections(maxConnections)
-                .pendingAcquireTimeout(Duration.ofMillis(acquisitionTimeout))
-                .maxIdleTime(Duration.ofMillis(maxIdleTime))
-                .lifo() 
-                .evictInBackground(Duration.ofMillis(evictInterval))
-                .metrics(true)
-                .build();
 
-        LoopResources loop = LoopResources.create(
+    /**
+     * Event loops of the WebClient, also watched by the event-loop watchdog
+     */
+    @Bean(destroyMethod = "dispose")
+    public LoopResources webClientLoopResources() {
+        return LoopResources.create(
                 eventLoopName, 
                 nettyEventLoopSelectorThreads, 
                 nettyEventLoopWorkerThreads, 
                 true
         );
+    }
+
+    /**
+     * WebClient over a connector rebuilt whenever the pool size, acquire timeout or response timeout is tuned
+     */
+    @Bean
+    public WebClient webClient(PerformanceSettings settings, DownstreamTimingFilter downstreamTimingFilter,
+                               UpstreamBalancer upstreamBalancer, LoopResources webClientLoopResources) {
+        TunableClientHttpConnector connector = new TunableClientHttpConnector(
+                () -> connectionProvider(settings),
+                provider -> new ReactorClientHttpConnector(
+                        httpClient(provider, webClientLoopResources, settings, downstreamTimingFilter::route)));
+        for (String setting : List.of(PerformanceSettings.MAX_CONNECTIONS, PerformanceSettings.ACQUISITION_TIMEOUT,
+                PerformanceSettings.RESPONSE_TIMEOUT)) {
+            settings.onChange(setting, value -> connector.rebuild(
+                    settings.getResponseTimeout().multipliedBy(settings.getTimeoutMultiplier())));
+        }
 
-        HttpClient httpClient = HttpClient.create(provider)
-                .runOn(loop)
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
-                .option(ChannelOption.TCP_NODELAY, true)
-                .option(ChannelOption.SO_KEEPALIVE, true)
-                .option(ChannelOption.SO_REUSEADDR, true)
-                .responseTimeout(Duration.ofMillis(responseTimeout))
-                .doOnConnected(conn -> 
-                        conn.addHandlerLast(new ReadTimeoutHandler(readTimeout, TimeUnit.MILLISECONDS))
-                            .addHandlerLast(new WriteTimeoutHandler(writeTimeout, TimeUnit.MILLISECONDS)))
-                .compress(true)
-                .keepAlive(true)
-                .wiretap(false); 
-        
         ExchangeStrategies exchangeStrategies = ExchangeStrategies.builder()
                 .codecs(configurer -> {
                     configurer.defaultCodecs().maxInMemorySize(maxMemorySize);
                     configurer.defaultCodecs().enableLoggingRequestDetails(false);
+                    configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(decoderObjectMapper()));
                 })
                 .build();
         
         return WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .clientConnector(connector)
                 .exchangeStrategies(exchangeStrategies)
-                .filter(logRequest())
+                .filter(downstreamTimingFilter)
+                // Innermost: the balancer times the call to the chosen instance only
+                .filter(upstreamBalancer)
                 .build();
     }
     
-    private ExchangeFilterFunction logRequest() {
-        return ExchangeFilterFunction.ofRequestProcessor(clientRequest -> {
-            if (clientRequest.url().getPath().contains(productPathIndicator)) {
-                return Mono.just(clientRequest);
-            }
-            return Mono.just(clientRequest);
-        });
+    /**
+     * Object mapper of the response decoder, with the deserializers of the product API responses already built.
+     * Built lazily, the first concurrent responses would wait on the lock of Jackson's deserializer cache
+     * from the event loops.
+     */
+    private static ObjectMapper decoderObjectMapper() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        TypeFactory typeFactory = objectMapper.getTypeFactory();
+        objectMapper.canDeserialize(typeFactory.constructType(ProductDetail.class));
+        objectMapper.canDeserialize(typeFactory.constructCollectionType(List.class, String.class));
+        return objectMapper;
+    }
+
+    private ConnectionProvider connectionProvider(PerformanceSettings settings) {
+        return ConnectionProvider.builder(connectionProviderName)
+                .maxConnections(settings.get(PerformanceSettings.MAX_CONNECTIONS))
+                .pendingAcquireTimeout(Duration.ofMillis(settings.get(PerformanceSettings.ACQUISITION_TIMEOUT)))
+                .maxIdleTime(Duration.ofMillis(maxIdleTime))
+                .lifo() 
+                .evictInBackground(Duration.ofMillis(evictInterval))
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * Reactor Netty client recording connect, TLS, send and receive times per route template
+     */
+    private HttpClient httpClient(ConnectionProvider provider, LoopResources loop, PerformanceSettings settings,
+                                  Function<String, String> routeTemplate) {
+        return HttpClient.create(provider)
+                .runOn(loop)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .responseTimeout(settings.getResponseTimeout())
+                .doOnConnected(conn -> 
+                        conn.addHandlerLast(new ReadTimeoutHandler(readTimeout, TimeUnit.MILLISECONDS))
+                            .addHandlerLast(new WriteTimeoutHandler(writeTimeout, TimeUnit.MILLISECONDS)))
+                .compress(true)
+                .keepAlive(true)
+                .metrics(true, routeTemplate)
+                .wiretap(false); 
     }
 } 
\ No newline at end of file
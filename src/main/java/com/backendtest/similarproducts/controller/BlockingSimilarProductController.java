@@ -0,0 +1,64 @@
+package com.backendtest.similarproducts.controller;
+
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.service.BlockingSimilarProductService;
+import com.backendtest.similarproducts.service.DegradedResultException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Controller for similar products API in the virtual-thread execution mode
+ */
+@Slf4j
+@RestController
+@RequestMapping("/product")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "service.execution-mode", havingValue = "virtual-threads")
+public class BlockingSimilarProductController {
+
+    private final BlockingSimilarProductService similarProductService;
+    private final SimilarProductsResponses similarProductsResponses;
+    private final HotKeyTracker hotKeyTracker;
+
+    @Value("${log.message.controller-similar-request}")
+    private String logSimilarRequest;
+
+    /**
+     * Get similar products for a given product ID
+     * @param productId Product ID to find similar products for
+     * @param limit Maximum number of similar products, all of them if absent or not positive
+     * @param fields Comma-separated fields of the product details to write, all of them if absent
+     * @param accept Accept header choosing JSON (default), Smile or CBOR
+     * @return List of similar product details, or 304 if it matches the If-None-Match header;
+     * not cacheable by clients if the product API failed or timed out
+     */
+    @GetMapping(value = "/{productId}/similar", produces = {MediaType.APPLICATION_JSON_VALUE,
+            SimilarProductsResponses.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<Object> getSimilarProducts(@PathVariable String productId,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     @RequestParam(required = false) Set<String> fields,
+                                                     @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.debug(logSimilarRequest, productId);
+        hotKeyTracker.requested(productId);
+        MediaType encoding = SimilarProductsResponses.encoding(accept);
+
+        try {
+            List<ProductDetail> products = limit != null && limit > 0
+                    ? similarProductService.getSimilarProducts(productId, limit)
+                    : similarProductService.getSimilarProducts(productId);
+            return similarProductsResponses.cached(productId, products, fields, encoding);
+        } catch (DegradedResultException degraded) {
+            return similarProductsResponses.uncached(degraded.getProducts(), fields);
+        }
+    }
+}
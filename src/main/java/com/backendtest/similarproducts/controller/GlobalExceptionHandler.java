@@ -1,12 +1,18 @@
 package com.backendtest.similarproducts.controller;
 
+import com.backendtest.similarproducts.logging.RateLimitedLogger;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.ErrorResponse;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.resource.NoResourceFoundException;
 import reactor.core.publisher.Mono;
 
 import java.util.Map;
@@ -19,9 +25,6 @@ import java.util.concurrent.TimeoutException;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
     
-    @Value("${log.message.error-not-found}")
-    private String logErrorNotFound;
-    
     @Value("${log.message.error-timeout}")
     private String logErrorTimeout;
     
@@ -33,29 +36,31 @@ public class GlobalExceptionHandler {
     
     @Value("${response.value.scan-available:true}")
     private Boolean responseValueScanAvailable;
+
+    private final RateLimitedLogger errorLog = new RateLimitedLogger(log);
     
     /**
-     * Handle not found exceptions
+     * Handle timeout exceptions
      * @param ex Exception thrown
      * @return Error response
      */
-    @ExceptionHandler(WebClientResponseException.NotFound.class)
-    @ResponseStatus(HttpStatus.NOT_FOUND)
-    public Mono<Map<String, Boolean>> handleNotFoundException(WebClientResponseException.NotFound ex) {
-        log.warn(logErrorNotFound, ex.getMessage());
+    @ExceptionHandler(TimeoutException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public Mono<Map<String, Boolean>> handleTimeoutException(TimeoutException ex) {
+        errorLog.warn(logErrorTimeout, ex.getMessage());
         return Mono.just(Map.of(responseKeyScanAvailable, responseValueScanAvailable));
     }
 
     /**
-     * Handle timeout exceptions
+     * Handle exceptions carrying their own status, such as invalid actuator requests, unknown paths and
+     * actuator operations not enabled
      * @param ex Exception thrown
-     * @return Error response
+     * @return Error response with the status of the exception
      */
-    @ExceptionHandler(TimeoutException.class)
-    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
-    public Mono<Map<String, Boolean>> handleTimeoutException(TimeoutException ex) {
-        log.warn(logErrorTimeout, ex.getMessage());
-        return Mono.just(Map.of(responseKeyScanAvailable, responseValueScanAvailable));
+    @ExceptionHandler({ResponseStatusException.class, NoResourceFoundException.class,
+            HttpRequestMethodNotSupportedException.class})
+    public ResponseEntity<ProblemDetail> handleResponseStatusException(ErrorResponse ex) {
+        return ResponseEntity.status(ex.getStatusCode()).body(ex.getBody());
     }
 
     /**
@@ -66,7 +71,7 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Mono<Map<String, Boolean>> handleException(Exception ex) {
-        log.error(logErrorUnexpected, ex.getMessage());
+        errorLog.error(logErrorUnexpected, ex.getMessage());
         return Mono.just(Map.of(responseKeyScanAvailable, responseValueScanAvailable));
     }
 } 
\ No newline at end of file
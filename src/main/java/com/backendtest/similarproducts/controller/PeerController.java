@@ -0,0 +1,64 @@
+package com.backendtest.similarproducts.controller;
+
+import com.backendtest.similarproducts.client.PeerClient;
+import com.backendtest.similarproducts.client.ProductClient;
+import com.backendtest.similarproducts.logging.RateLimitedLogger;
+import com.backendtest.similarproducts.model.ProductDetail;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Internal endpoint serving the product details this node owns to the other replicas.
+ * It shares the public port, so only callers presenting {@code cluster.peer-token} are served:
+ * anyone else could otherwise bypass the ownership routing and load details from any node.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/internal/peer")
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+public class PeerController {
+
+    @Value("${log.message.warn-peer-forbidden}")
+    private String logWarnPeerForbidden;
+
+    private final RateLimitedLogger errorLog = new RateLimitedLogger(log);
+
+    private final ProductClient productClient;
+    private final byte[] peerToken;
+
+    public PeerController(ProductClient productClient, @Value("${cluster.peer-token:}") String peerToken) {
+        if (peerToken.isBlank()) {
+            throw new IllegalStateException("cluster.peer-token must be set when cluster.enabled=true");
+        }
+        this.productClient = productClient;
+        this.peerToken = peerToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get a product detail owned by this node, from its cache or the product API
+     * @param productId Product ID to get details for
+     * @param token Shared token of the cluster
+     * @return Product detail, 404 if the product API does not know it, or 403 if the token does not match
+     */
+    @GetMapping(value = "/product/{productId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<ProductDetail>> getProductDetail(
+            @PathVariable String productId,
+            @RequestHeader(name = PeerClient.PEER_TOKEN_HEADER, required = false) String token) {
+        if (token == null || !MessageDigest.isEqual(peerToken, token.getBytes(StandardCharsets.UTF_8))) {
+            errorLog.warn(logWarnPeerForbidden, productId);
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        return productClient.getOwnedProductDetail(productId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -1,16 +1,22 @@
 package com.backendtest.similarproducts.controller;
 
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
 import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.service.DegradedResultException;
 import com.backendtest.similarproducts.service.SimilarProductService;
+import com.backendtest.similarproducts.service.SimilarProductsFastPath;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Controller for similar products API
@@ -19,9 +25,13 @@ import java.util.List;
 @RestController
 @RequestMapping("/product")
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "service.execution-mode", havingValue = "reactive", matchIfMissing = true)
 public class SimilarProductController {
 
     private final SimilarProductService similarProductService;
+    private final SimilarProductsResponses similarProductsResponses;
+    private final HotKeyTracker hotKeyTracker;
+    private final SimilarProductsFastPath fastPath;
     
     @Value("${log.message.controller-similar-request}")
     private String logSimilarRequest;
@@ -29,13 +39,31 @@ public class SimilarProductController {
     /**
      * Get similar products for a given product ID
      * @param productId Product ID to find similar products for
-     * @return List of similar product details
+     * @param limit Maximum number of similar products, all of them if absent or not positive
+     * @param fields Comma-separated fields of the product details to write, all of them if absent
+     * @param accept Accept header choosing JSON (default), Smile or CBOR
+     * @return List of similar product details, or 304 if it matches the If-None-Match header;
+     * not cacheable by clients if the product API failed or timed out
      */
-    @GetMapping(value = "/{productId}/similar", produces = MediaType.APPLICATION_JSON_VALUE)
-    public Mono<List<ProductDetail>> getSimilarProducts(@PathVariable String productId) {
+    @GetMapping(value = "/{productId}/similar", produces = {MediaType.APPLICATION_JSON_VALUE,
+            SimilarProductsResponses.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public Mono<ResponseEntity<Object>> getSimilarProducts(@PathVariable String productId,
+                                                           @RequestParam(required = false) Integer limit,
+                                                           @RequestParam(required = false) Set<String> fields,
+                                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         log.debug(logSimilarRequest, productId);
+        hotKeyTracker.requested(productId);
+        MediaType encoding = SimilarProductsResponses.encoding(accept);
         
-        return similarProductService.getSimilarProducts(productId)
-                .onErrorReturn(Collections.emptyList());
+        boolean limited = limit != null && limit > 0;
+        Mono<List<ProductDetail>> products = fastPath.serve(productId, limited ? limit : Integer.MAX_VALUE,
+                () -> limited
+                        ? similarProductService.getSimilarProducts(productId, limit)
+                        : similarProductService.getSimilarProducts(productId));
+        return products
+                .map(list -> similarProductsResponses.cached(productId, list, fields, encoding))
+                .onErrorResume(DegradedResultException.class,
+                        degraded -> Mono.just(similarProductsResponses.uncached(degraded.getProducts(), fields)))
+                .onErrorReturn(similarProductsResponses.uncached());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,182 @@
+package com.backendtest.similarproducts.controller;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.model.ProductDetailProjection;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.github.benmanes.caffeine.cache.Policy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Builds the similar products responses with the validators and freshness of the cached list:
+ * an ETag derived from the list content, so that Spring MVC answers a matching {@code If-None-Match}
+ * with 304 before serializing the body, and a {@code Cache-Control} max-age of the remaining cache TTL,
+ * or {@code no-cache} when the list is not in the cache, so that clients revalidate it with the ETag.
+ * The lists are written as JSON by default, or as Smile or CBOR when the Accept header asks for them.
+ */
+@Component
+public class SimilarProductsResponses {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    /**
+     * Encodings of the similar products endpoints, in order of preference when several are acceptable
+     */
+    private static final List<MediaType> ENCODINGS = List.of(
+            MediaType.APPLICATION_JSON, MediaType.valueOf(APPLICATION_SMILE_VALUE), MediaType.APPLICATION_CBOR);
+
+    private final CacheManager cacheManager;
+    private final String cacheName;
+
+    public SimilarProductsResponses(
+            CacheManager cacheManager,
+            @Value("${cache.name.similar-products:similarProducts}") String cacheName) {
+        this.cacheManager = cacheManager;
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * Response for a list served from the similar products cache, or by the service without being cached
+     * @param productId Product ID the list is cached under
+     * @param products Similar product details
+     * @param fields Fields of the product details to write, null for all of them
+     * @param encoding Encoding the body is written in, as resolved by {@link #encoding(String)}
+     * @return Response with ETag, Cache-Control and Vary headers
+     */
+    public ResponseEntity<Object> cached(String productId, List<ProductDetail> products, Set<String> fields,
+                                         MediaType encoding) {
+        return ResponseEntity.ok()
+                .eTag(eTag(products, fields, encoding))
+                .cacheControl(remainingTtl(productId).map(CacheControl::maxAge).orElseGet(CacheControl::noCache))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(project(products, fields));
+    }
+
+    /**
+     * Response for the empty list returned when the lookup failed, which clients must not reuse
+     */
+    public ResponseEntity<Object> uncached() {
+        return uncached(Collections.emptyList(), null);
+    }
+
+    /**
+     * Response for a degraded list, built while the product API failed or timed out, which clients must not reuse
+     * @param products Similar product details found before the failure
+     * @param fields Fields of the product details to write, null for all of them
+     * @return Response without ETag and with {@code Cache-Control: no-store}
+     */
+    public ResponseEntity<Object> uncached(List<ProductDetail> products, Set<String> fields) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(project(products, fields));
+    }
+
+    /**
+     * Encoding Spring MVC picks for an Accept header, needed before the body is written because each
+     * encoding is a representation with its own ETag: the most specific and preferred accepted type
+     * decides, and JSON wins when several encodings would do
+     * @param accept Accept header, null if absent
+     * @return JSON, Smile or CBOR media type
+     */
+    public static MediaType encoding(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType type : accepted) {
+            for (MediaType encoding : ENCODINGS) {
+                if (type.getQualityValue() > 0 && type.isCompatibleWith(encoding)) {
+                    return encoding;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Wrap the products so that Jackson writes only the requested fields, without copying them
+     */
+    private static Object project(List<ProductDetail> products, Set<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return products;
+        }
+        MappingJacksonValue projection = new MappingJacksonValue(products);
+        projection.setFilters(new SimpleFilterProvider()
+                .addFilter(ProductDetailProjection.FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(fields)));
+        return projection;
+    }
+
+    /**
+     * Strong ETag from a 64-bit FNV-1a hash of the list content, projection and binary encoding, identical
+     * across replicas. JSON keeps the ETags it had before the binary encodings were added.
+     */
+    static String eTag(List<ProductDetail> products, Set<String> fields, MediaType encoding) {
+        long hash = 0xcbf29ce484222325L;
+        for (ProductDetail product : products) {
+            hash = fnv(hash, product.getId());
+            hash = fnv(hash, product.getName());
+            hash = fnv(hash, Objects.toString(product.getPrice()));
+            hash = fnv(hash, Objects.toString(product.getAvailability()));
+        }
+        if (fields != null && !fields.isEmpty()) {
+            for (String field : new TreeSet<>(fields)) {
+                hash = fnv(hash, field);
+            }
+        }
+        if (!MediaType.APPLICATION_JSON.equalsTypeAndSubtype(encoding)) {
+            hash = fnv(hash, encoding.getSubtype());
+        }
+        return "\"" + Long.toHexString(hash) + "-" + products.size() + "\"";
+    }
+
+    private static long fnv(long hash, String value) {
+        if (value != null) {
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+        }
+        // Field separator, so that ("ab", "c") and ("a", "bc") differ
+        hash ^= 0xff;
+        hash *= 0x100000001b3L;
+        return hash;
+    }
+
+    /**
+     * Time left before the cached list expires, measured against the current, possibly tuned, expiration
+     * @return Remaining TTL, or empty if the list is not cached or the cache does not expire it by age
+     */
+    private Optional<Duration> remainingTtl(String productId) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            @SuppressWarnings("unchecked")
+            Policy<Object, ?> policy = (Policy<Object, ?>) nativeCache.policy();
+            return policy.expireAfterWrite()
+                    .flatMap(expiry -> expiry.ageOf(productId)
+                            .map(age -> expiry.getExpiresAfter().minus(age)))
+                    .filter(remaining -> !remaining.isNegative());
+        }
+        return Optional.empty();
+    }
+}
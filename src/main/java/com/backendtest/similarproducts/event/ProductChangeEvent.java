@@ -0,0 +1,26 @@
+package com.backendtest.similarproducts.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Event pushed by the product domain when a product detail or its similar IDs change
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeEvent {
+
+    /**
+     * What changed for the product
+     */
+    public enum Type {
+        DETAIL,
+        SIMILAR_IDS
+    }
+
+    private String productId;
+    private Type type;
+    private boolean refresh;
+}
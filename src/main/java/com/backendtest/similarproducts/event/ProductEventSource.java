@@ -0,0 +1,16 @@
+package com.backendtest.similarproducts.event;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Source of product change events, e.g. a message broker consumer or a CDC stream.
+ * Every bean implementing this interface is subscribed to on startup and its events invalidate the caches.
+ */
+public interface ProductEventSource {
+
+    /**
+     * Stream of product change events
+     * @return Events, expected to be hot and never complete while the application runs
+     */
+    Flux<ProductChangeEvent> events();
+}
@@ -0,0 +1,173 @@
+package com.backendtest.similarproducts.eventloop;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.EventExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the WebClient event loops for stalls: blocking or CPU-heavy work keeping a loop from serving
+ * the other connections. Every interval an empty probe task is queued on each loop, and the time until it runs
+ * is recorded in the {@code eventloop.task.latency} timer. A probe still waiting after the stall threshold counts
+ * in {@code eventloop.stalls} and logs the stack trace of the loop thread, showing the offending code.
+ */
+@Slf4j
+@Component
+public class EventLoopWatchdog {
+
+    private static final Duration[] BUCKETS = {
+            Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(50),
+            Duration.ofMillis(100), Duration.ofMillis(200), Duration.ofMillis(500), Duration.ofMillis(1000)};
+
+    private final MeterRegistry meterRegistry;
+    private final LoopResources loopResources;
+    private final String eventLoopName;
+    private final boolean enabled;
+    private final Duration interval;
+    private final long stallThresholdNanos;
+    private final List<Probe> probes = new ArrayList<>();
+    private Scheduler scheduler;
+    private Disposable checker;
+
+    @Value("${log.message.warn-event-loop-stall}")
+    private String logWarnEventLoopStall;
+
+    @Value("${log.message.event-loop-resumed}")
+    private String logEventLoopResumed;
+
+    public EventLoopWatchdog(
+            MeterRegistry meterRegistry,
+            LoopResources webClientLoopResources,
+            @Value("${webclient.event-loop-name:webclient-event-loop}") String eventLoopName,
+            @Value("${eventloop.watchdog.enabled:true}") boolean enabled,
+            @Value("${eventloop.watchdog.interval:100}") int interval,
+            @Value("${eventloop.watchdog.stall-threshold:200}") int stallThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.loopResources = webClientLoopResources;
+        this.eventLoopName = eventLoopName;
+        this.enabled = enabled;
+        this.interval = Duration.ofMillis(interval);
+        this.stallThresholdNanos = Duration.ofMillis(stallThreshold).toNanos();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        int index = 0;
+        for (EventExecutor executor : loopResources.onClient(true)) {
+            probes.add(new Probe(executor, eventLoopName + "-" + index++));
+        }
+        scheduler = Schedulers.newSingle("event-loop-watchdog");
+        checker = Flux.interval(interval, interval, scheduler)
+                .subscribe(tick -> check());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (checker != null) {
+            checker.dispose();
+            scheduler.dispose();
+        }
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        for (Probe probe : probes) {
+            probe.check(now);
+        }
+    }
+
+    private static String stackTrace(Thread thread) {
+        if (thread == null) {
+            return " unknown";
+        }
+        StringBuilder stack = new StringBuilder();
+        for (StackTraceElement element : thread.getStackTrace()) {
+            stack.append("\n\tat ").append(element);
+        }
+        return stack.toString();
+    }
+
+    /**
+     * Probe task of one event loop, queued again once the previous one has run
+     */
+    private final class Probe {
+        private final EventExecutor executor;
+        private final String name;
+        private final Timer latency;
+        private final Counter stalls;
+        private volatile Thread thread;
+        private volatile long submitted;
+        private volatile long waited;
+        private volatile boolean pending;
+        private volatile boolean stalled;
+
+        private Probe(EventExecutor executor, String name) {
+            this.executor = executor;
+            this.name = name;
+            this.latency = Timer.builder("eventloop.task.latency")
+                    .description("Time a task queued on the event loop waits before running")
+                    .tag("loop", name)
+                    .serviceLevelObjectives(BUCKETS)
+                    .register(meterRegistry);
+            this.stalls = Counter.builder("eventloop.stalls")
+                    .description("Times the event loop kept a queued task waiting longer than the stall threshold")
+                    .tag("loop", name)
+                    .register(meterRegistry);
+        }
+
+        private void check(long now) {
+            if (pending) {
+                long waiting = now - submitted;
+                if (!stalled && waiting >= stallThresholdNanos) {
+                    stalled = true;
+                    stalls.increment();
+                    log.warn(logWarnEventLoopStall, name, TimeUnit.NANOSECONDS.toMillis(waiting), stackTrace(thread));
+                }
+                return;
+            }
+            if (stalled) {
+                stalled = false;
+                log.info(logEventLoopResumed, name, TimeUnit.NANOSECONDS.toMillis(waited));
+            }
+            if (executor.isShuttingDown()) {
+                return;
+            }
+            submitted = now;
+            pending = true;
+            try {
+                executor.execute(this::run);
+            } catch (RejectedExecutionException e) {
+                pending = false;
+            }
+        }
+
+        /**
+         * Runs on the event loop: records the wait only, logging is left to the watchdog thread
+         */
+        private void run() {
+            waited = System.nanoTime() - submitted;
+            latency.record(waited, TimeUnit.NANOSECONDS);
+            thread = Thread.currentThread();
+            pending = false;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.backendtest.similarproducts.hotkeys;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free heavy-hitter tracker with a fixed memory footprint: a count-min sketch estimates the
+ * frequency of every key, and a small open-addressed table keeps the keys worth reporting, a newcomer
+ * replacing the least frequent candidate of its probe window when it has been seen more often.
+ * Counts only ever overestimate, by at most {@code e * total / width} with high probability.
+ */
+public class HeavyHitters {
+
+    private static final int PROBES = 4;
+
+    /**
+     * Key with its estimated count
+     */
+    public record Entry(String key, long count) {
+    }
+
+    private final int depth;
+    private final int widthMask;
+    private final int candidatesMask;
+    private final AtomicLongArray counters;
+    private final AtomicReferenceArray<String> candidates;
+
+    /**
+     * @param width Counters per sketch row, rounded up to a power of two
+     * @param depth Sketch rows, each with an independent hash
+     * @param candidates Keys tracked for reporting, rounded up to a power of two
+     */
+    public HeavyHitters(int width, int depth, int candidates) {
+        int roundedWidth = powerOfTwo(width);
+        int roundedCandidates = powerOfTwo(candidates);
+        this.depth = depth;
+        this.widthMask = roundedWidth - 1;
+        this.candidatesMask = roundedCandidates - 1;
+        this.counters = new AtomicLongArray(roundedWidth * depth);
+        this.candidates = new AtomicReferenceArray<>(roundedCandidates);
+    }
+
+    /**
+     * Count one occurrence of a key
+     */
+    public void add(String key) {
+        long hash = mix(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, h1, h2)));
+        }
+        offer(key, h1, estimate);
+    }
+
+    /**
+     * Estimated count of a key
+     */
+    public long estimate(String key) {
+        long hash = mix(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, h1, h2)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Most frequent keys
+     * @param n Maximum number of keys
+     * @return Keys by decreasing estimated count, only those seen since the last decays
+     */
+    public List<Entry> top(int n) {
+        Set<String> keys = new HashSet<>();
+        for (int slot = 0; slot < candidates.length(); slot++) {
+            String key = candidates.get(slot);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        List<Entry> entries = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            long count = estimate(key);
+            if (count > 0) {
+                entries.add(new Entry(key, count));
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::count).reversed());
+        return entries.size() <= n ? entries : List.copyOf(entries.subList(0, n));
+    }
+
+    /**
+     * Halve every counter, so that the report follows the current traffic rather than the all-time one
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >>> 1);
+        }
+    }
+
+    /**
+     * Forget every key
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        for (int slot = 0; slot < candidates.length(); slot++) {
+            candidates.set(slot, null);
+        }
+    }
+
+    /**
+     * Make a key a reporting candidate if it is already one, a slot is free, or it beats the least
+     * frequent candidate of its probe window
+     */
+    private void offer(String key, int hash, long estimate) {
+        int victimSlot = -1;
+        String victim = null;
+        long victimCount = estimate;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (hash + probe) & candidatesMask;
+            String current = candidates.get(slot);
+            if (current == null) {
+                if (candidates.compareAndSet(slot, null, key)) {
+                    return;
+                }
+                current = candidates.get(slot);
+            }
+            if (key.equals(current)) {
+                return;
+            }
+            long count = estimate(current);
+            if (count < victimCount) {
+                victimSlot = slot;
+                victim = current;
+                victimCount = count;
+            }
+        }
+        if (victimSlot >= 0) {
+            candidates.compareAndSet(victimSlot, victim, key);
+        }
+    }
+
+    private int index(int row, int h1, int h2) {
+        return row * (widthMask + 1) + ((h1 + row * h2) & widthMask);
+    }
+
+    /**
+     * MurmurHash3 finalizer spreading the string hash code over 64 bits
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int powerOfTwo(int value) {
+        return Math.max(1, Integer.highestOneBit(Math.max(1, value - 1)) << 1);
+    }
+}
@@ -0,0 +1,151 @@
+package com.backendtest.similarproducts.hotkeys;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the products driving the traffic: the most requested ones, the ones most often loaded
+ * from the product API because they were not cached, and the ones most often slow to load.
+ * Counters are halved periodically, and the top products are published as the
+ * {@code hotkeys.count} gauge, tagged by tracker and product.
+ */
+@Component
+public class HotKeyTracker {
+
+    public static final String REQUESTED = "requested";
+    public static final String DOWNSTREAM_MISS = "downstream-miss";
+    public static final String SLOW = "slow";
+
+    private final HeavyHitters requested;
+    private final HeavyHitters downstreamMisses;
+    private final HeavyHitters slow;
+    private final long slowThresholdNanos;
+    private final int topN;
+    private final Duration decayInterval;
+    private final Duration reportInterval;
+    private final MultiGauge gauge;
+    private Disposable decayer;
+    private Disposable reporter;
+
+    public HotKeyTracker(
+            MeterRegistry meterRegistry,
+            @Value("${hotkeys.top-n:10}") int topN,
+            @Value("${hotkeys.sketch.width:2048}") int sketchWidth,
+            @Value("${hotkeys.sketch.depth:4}") int sketchDepth,
+            @Value("${hotkeys.candidates:64}") int candidates,
+            @Value("${hotkeys.slow-threshold:500}") int slowThreshold,
+            @Value("${hotkeys.decay-interval:60000}") int decayInterval,
+            @Value("${hotkeys.report-interval:15000}") int reportInterval) {
+        this.requested = new HeavyHitters(sketchWidth, sketchDepth, candidates);
+        this.downstreamMisses = new HeavyHitters(sketchWidth, sketchDepth, candidates);
+        this.slow = new HeavyHitters(sketchWidth, sketchDepth, candidates);
+        this.slowThresholdNanos = Duration.ofMillis(slowThreshold).toNanos();
+        this.topN = topN;
+        this.decayInterval = Duration.ofMillis(decayInterval);
+        this.reportInterval = Duration.ofMillis(reportInterval);
+        this.gauge = MultiGauge.builder("hotkeys.count")
+                .description("Estimated recent count of the top products of each hot-key tracker")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        decayer = Flux.interval(decayInterval, decayInterval)
+                .subscribe(tick -> decay());
+        reporter = Flux.interval(reportInterval, reportInterval)
+                .subscribe(tick -> report());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (decayer != null) {
+            decayer.dispose();
+        }
+        if (reporter != null) {
+            reporter.dispose();
+        }
+    }
+
+    /**
+     * Record a request for the similar products of a product
+     */
+    public void requested(String productId) {
+        requested.add(productId);
+    }
+
+    /**
+     * Record a call to the product API for a product that was not cached
+     * @param productId Product ID
+     * @param elapsedNanos Duration of the call
+     */
+    public void downstreamCall(String productId, long elapsedNanos) {
+        downstreamMisses.add(productId);
+        if (elapsedNanos >= slowThresholdNanos) {
+            slow.add(productId);
+        }
+    }
+
+    /**
+     * Report a reactive call to the product API, timed from subscription to termination
+     * @param productId Product ID
+     * @param call Call to the product API
+     * @return The call, reporting itself when it terminates or is cancelled
+     */
+    public <T> Mono<T> trackDownstream(String productId, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.doFinally(signal -> downstreamCall(productId, System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Top products of every tracker
+     * @return Top products by tracker name
+     */
+    public Map<String, List<HeavyHitters.Entry>> top() {
+        Map<String, List<HeavyHitters.Entry>> top = new LinkedHashMap<>();
+        top.put(REQUESTED, requested.top(topN));
+        top.put(DOWNSTREAM_MISS, downstreamMisses.top(topN));
+        top.put(SLOW, slow.top(topN));
+        return top;
+    }
+
+    /**
+     * Forget the products tracked so far, e.g. the synthetic traffic of the warm-up
+     */
+    public void clear() {
+        requested.clear();
+        downstreamMisses.clear();
+        slow.clear();
+    }
+
+    void decay() {
+        requested.decay();
+        downstreamMisses.decay();
+        slow.decay();
+    }
+
+    /**
+     * Replace the published gauges, so that products leaving the top do not linger as stale series
+     */
+    void report() {
+        List<MultiGauge.Row<?>> rows = new ArrayList<>();
+        top().forEach((tracker, entries) -> entries.forEach(entry ->
+                rows.add(MultiGauge.Row.of(Tags.of("tracker", tracker, "product", entry.key()), entry.count()))));
+        gauge.register(rows, true);
+    }
+}
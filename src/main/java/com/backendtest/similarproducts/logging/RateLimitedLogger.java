@@ -0,0 +1,118 @@
+package com.backendtest.similarproducts.logging;
+
+import org.slf4j.Logger;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logger wrapper letting through at most a fixed number of messages per second for each message format,
+ * so that an error storm does not turn into a logging storm. The number of messages dropped is appended
+ * to the next one that gets through.
+ */
+public class RateLimitedLogger {
+
+    private static final int DEFAULT_PERMITS_PER_SECOND = 10;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final String SUPPRESSED_SUFFIX = " ({} similar messages suppressed)";
+
+    private final Logger logger;
+    private final int permitsPerSecond;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    public RateLimitedLogger(Logger logger) {
+        this(logger, DEFAULT_PERMITS_PER_SECOND);
+    }
+
+    public RateLimitedLogger(Logger logger, int permitsPerSecond) {
+        this.logger = logger;
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    public void warn(String format, Object arg) {
+        if (logger.isWarnEnabled()) {
+            long suppressed = acquire(format);
+            if (suppressed == 0) {
+                logger.warn(format, arg);
+            } else if (suppressed > 0) {
+                logger.warn(format + SUPPRESSED_SUFFIX, arg, suppressed);
+            }
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        if (logger.isWarnEnabled()) {
+            long suppressed = acquire(format);
+            if (suppressed == 0) {
+                logger.warn(format, arg1, arg2);
+            } else if (suppressed > 0) {
+                logger.warn(format + SUPPRESSED_SUFFIX, arg1, arg2, suppressed);
+            }
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2, Object arg3) {
+        if (logger.isWarnEnabled()) {
+            long suppressed = acquire(format);
+            if (suppressed == 0) {
+                logger.warn(format, arg1, arg2, arg3);
+            } else if (suppressed > 0) {
+                logger.warn(format + SUPPRESSED_SUFFIX, arg1, arg2, arg3, suppressed);
+            }
+        }
+    }
+
+    public void error(String format, Object arg) {
+        if (logger.isErrorEnabled()) {
+            long suppressed = acquire(format);
+            if (suppressed == 0) {
+                logger.error(format, arg);
+            } else if (suppressed > 0) {
+                logger.error(format + SUPPRESSED_SUFFIX, arg, suppressed);
+            }
+        }
+    }
+
+    public void error(String format, Object arg1, Object arg2) {
+        if (logger.isErrorEnabled()) {
+            long suppressed = acquire(format);
+            if (suppressed == 0) {
+                logger.error(format, arg1, arg2);
+            } else if (suppressed > 0) {
+                logger.error(format + SUPPRESSED_SUFFIX, arg1, arg2, suppressed);
+            }
+        }
+    }
+
+    /**
+     * Take a permit of the current window of a message format
+     * @param format Message format, the rate-limiting key
+     * @return -1 if the message must be dropped, otherwise the number of messages dropped since the last one logged
+     */
+    long acquire(String format) {
+        Window window = windows.computeIfAbsent(Objects.requireNonNullElse(format, ""), key -> new Window());
+        long now = System.nanoTime();
+        if (now - window.start >= WINDOW_NANOS) {
+            synchronized (window) {
+                if (now - window.start >= WINDOW_NANOS) {
+                    window.used.set(0);
+                    window.start = now;
+                }
+            }
+        }
+        if (window.used.incrementAndGet() <= permitsPerSecond) {
+            return window.suppressed.getAndSet(0);
+        }
+        window.suppressed.incrementAndGet();
+        return -1;
+    }
+
+    private static class Window {
+        private volatile long start = System.nanoTime();
+        private final AtomicInteger used = new AtomicInteger();
+        private final AtomicLong suppressed = new AtomicLong();
+    }
+}
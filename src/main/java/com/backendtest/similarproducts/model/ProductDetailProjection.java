@@ -0,0 +1,13 @@
+package com.backendtest.similarproducts.model;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+/**
+ * Jackson mix-in attaching the field projection filter to {@link ProductDetail},
+ * registered on the application object mapper only
+ */
+@JsonFilter(ProductDetailProjection.FILTER)
+public interface ProductDetailProjection {
+
+    String FILTER = "productDetailProjection";
+}
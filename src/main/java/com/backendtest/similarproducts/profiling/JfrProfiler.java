@@ -0,0 +1,344 @@
+package com.backendtest.similarproducts.profiling;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * On-demand profiling with a JDK Flight Recorder event stream, one session at a time and bounded in duration.
+ * While the session runs, the events are summarised in memory: hottest methods overall, in the application
+ * packages and on the Reactor and Netty threads, allocation sites, lock contention and GC pauses. When it ends,
+ * the recording is also written to a {@code .jfr} file for JDK Mission Control.
+ * <p>
+ * Only a few low-overhead events are enabled: execution samples every {@code profiling.sample-period} ms,
+ * throttled allocation samples, and monitor waits and parks longer than {@code profiling.lock-threshold} ms,
+ * keeping the cost to around one percent of CPU under load.
+ */
+@Slf4j
+@Component
+public class JfrProfiler {
+
+    private static final String PROFILER = JfrProfiler.class.getName();
+
+    /**
+     * Method or code site and its weight: samples, or bytes for allocation sites
+     */
+    public record Hotspot(String frame, long weight, double share) {
+    }
+
+    /**
+     * Code site waiting on a monitor or a lock
+     */
+    public record Contention(String site, long waits, double totalMillis, double longestMillis) {
+    }
+
+    /**
+     * Garbage collections of the session
+     */
+    public record GcPauses(long collections, double totalPauseMillis, double longestPauseMillis) {
+    }
+
+    /**
+     * Summary of a profiling session
+     * @param state {@code running} or {@code completed}
+     * @param threads Execution samples by thread kind: {@code netty}, {@code reactor}, {@code tomcat} or {@code other}
+     * @param applicationMethods Innermost application frame of each sample
+     * @param eventLoopMethods Hottest methods on the Netty and Reactor threads
+     * @param recording Whether the {@code .jfr} file of the session can be downloaded
+     */
+    public record Profile(String state, Instant startedAt, long durationSeconds, long executionSamples,
+                          Map<String, Long> threads, List<Hotspot> hotMethods, List<Hotspot> applicationMethods,
+                          List<Hotspot> eventLoopMethods, List<Hotspot> allocationSites,
+                          List<Contention> lockContention, GcPauses gc, boolean recording) {
+    }
+
+    private final String applicationPackage;
+    private final Duration samplePeriod;
+    private final Duration lockThreshold;
+    private final int allocationSamplesPerSecond;
+    private final Duration defaultDuration;
+    private final Duration maxDuration;
+    private final long maxBytes;
+    private final int top;
+    private final Path file;
+    private Session session;
+
+    @Value("${log.message.profiling-started}")
+    private String logProfilingStarted;
+
+    @Value("${log.message.profiling-completed}")
+    private String logProfilingCompleted;
+
+    @Value("${log.message.warn-profiling-failed}")
+    private String logWarnProfilingFailed;
+
+    public JfrProfiler(
+            @Value("${profiling.package:com.backendtest.similarproducts}") String applicationPackage,
+            @Value("${profiling.sample-period:20}") int samplePeriod,
+            @Value("${profiling.lock-threshold:10}") int lockThreshold,
+            @Value("${profiling.allocation-samples:150}") int allocationSamplesPerSecond,
+            @Value("${profiling.default-duration:30}") int defaultDuration,
+            @Value("${profiling.max-duration:300}") int maxDuration,
+            @Value("${profiling.max-bytes:104857600}") long maxBytes,
+            @Value("${profiling.top:20}") int top,
+            @Value("${profiling.file:${java.io.tmpdir}/similar-products.jfr}") String file) {
+        this.applicationPackage = applicationPackage + ".";
+        this.samplePeriod = Duration.ofMillis(samplePeriod);
+        this.lockThreshold = Duration.ofMillis(lockThreshold);
+        this.allocationSamplesPerSecond = allocationSamplesPerSecond;
+        this.defaultDuration = Duration.ofSeconds(defaultDuration);
+        this.maxDuration = Duration.ofSeconds(maxDuration);
+        this.maxBytes = maxBytes;
+        this.top = top;
+        this.file = Path.of(file);
+    }
+
+    /**
+     * Start a profiling session
+     * @param duration Duration of the session, capped to {@code profiling.max-duration}; null for the default one
+     * @return Summary of the new session
+     * @throws IllegalStateException If a session is already running
+     */
+    public synchronized Profile start(Duration duration) {
+        if (session != null && session.running) {
+            throw new IllegalStateException("A profiling session is already running");
+        }
+        Duration requested = duration != null && duration.isPositive() ? duration : defaultDuration;
+        Duration bounded = requested.compareTo(maxDuration) > 0 ? maxDuration : requested;
+        RecordingStream stream = new RecordingStream();
+        stream.setMaxSize(maxBytes);
+        stream.enable("jdk.ExecutionSample").withPeriod(samplePeriod);
+        stream.enable("jdk.ObjectAllocationSample").with("throttle", allocationSamplesPerSecond + "/s");
+        stream.enable("jdk.JavaMonitorEnter").withThreshold(lockThreshold).withStackTrace();
+        stream.enable("jdk.ThreadPark").withThreshold(lockThreshold).withStackTrace();
+        stream.enable("jdk.GarbageCollection");
+        Session started = new Session(stream, Instant.now(), bounded);
+        stream.onEvent("jdk.ExecutionSample", started::sample);
+        stream.onEvent("jdk.ObjectAllocationSample", started::allocation);
+        stream.onEvent("jdk.JavaMonitorEnter", started::contention);
+        stream.onEvent("jdk.ThreadPark", started::contention);
+        stream.onEvent("jdk.GarbageCollection", started::collection);
+        stream.startAsync();
+        started.stopper = Mono.delay(bounded, Schedulers.boundedElastic())
+                .subscribe(tick -> stop(started));
+        session = started;
+        log.info(logProfilingStarted, bounded.toSeconds());
+        return started.profile();
+    }
+
+    /**
+     * Stop the running session before its end, if any
+     */
+    public void stop() {
+        Session current;
+        synchronized (this) {
+            current = session;
+        }
+        if (current != null) {
+            current.stopper.dispose();
+            stop(current);
+        }
+    }
+
+    /**
+     * Summary of the running or last session, null if none was started
+     */
+    public synchronized Profile profile() {
+        return session != null ? session.profile() : null;
+    }
+
+    /**
+     * Recording file of the last completed session, null if there is none
+     */
+    public synchronized Path recording() {
+        return session != null && session.recorded ? file : null;
+    }
+
+    @PreDestroy
+    void close() {
+        stop();
+    }
+
+    /**
+     * Stop a session and write its recording. The session itself is not locked: the stream thread
+     * needs it to handle the last events.
+     */
+    private void stop(Session stopped) {
+        if (!stopped.stopping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            stopped.stream.stop();
+            Files.deleteIfExists(file);
+            stopped.stream.dump(file);
+            stopped.recorded = true;
+        } catch (IOException | RuntimeException e) {
+            log.warn(logWarnProfilingFailed, file, e.getMessage());
+        } finally {
+            stopped.stream.close();
+            stopped.running = false;
+        }
+        log.info(logProfilingCompleted, stopped.executionSamples, file);
+    }
+
+    /**
+     * Profiling session and its running summary, updated by the event stream thread
+     */
+    private final class Session {
+        private final RecordingStream stream;
+        private final Instant startedAt;
+        private final Duration duration;
+        private final Map<String, Long> threads = new TreeMap<>();
+        private final Map<String, Long> hotMethods = new HashMap<>();
+        private final Map<String, Long> applicationMethods = new HashMap<>();
+        private final Map<String, Long> eventLoopMethods = new HashMap<>();
+        private final Map<String, Long> allocationSites = new HashMap<>();
+        private final Map<String, double[]> contention = new HashMap<>();
+        private long executionSamples;
+        private long collections;
+        private double totalPauseMillis;
+        private double longestPauseMillis;
+        private final AtomicBoolean stopping = new AtomicBoolean();
+        private Disposable stopper;
+        private volatile boolean running = true;
+        private volatile boolean recorded;
+
+        private Session(RecordingStream stream, Instant startedAt, Duration duration) {
+            this.stream = stream;
+            this.startedAt = startedAt;
+            this.duration = duration;
+        }
+
+        private synchronized void sample(RecordedEvent event) {
+            RecordedStackTrace stackTrace = event.getStackTrace();
+            if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+                return;
+            }
+            executionSamples++;
+            String kind = threadKind(event.getThread("sampledThread"));
+            threads.merge(kind, 1L, Long::sum);
+            String method = method(stackTrace.getFrames().get(0));
+            hotMethods.merge(method, 1L, Long::sum);
+            if (kind.equals("netty") || kind.equals("reactor")) {
+                eventLoopMethods.merge(method, 1L, Long::sum);
+            }
+            RecordedFrame application = applicationFrame(stackTrace);
+            if (application != null) {
+                applicationMethods.merge(method(application), 1L, Long::sum);
+            }
+        }
+
+        private synchronized void allocation(RecordedEvent event) {
+            RecordedStackTrace stackTrace = event.getStackTrace();
+            if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+                return;
+            }
+            String site = site(stackTrace) + " " + event.getClass("objectClass").getName();
+            allocationSites.merge(site, event.getLong("weight"), Long::sum);
+        }
+
+        /**
+         * Monitor enter or park, kept only if application code waits: idle pool threads park too
+         */
+        private synchronized void contention(RecordedEvent event) {
+            RecordedStackTrace stackTrace = event.getStackTrace();
+            boolean monitor = event.getEventType().getName().equals("jdk.JavaMonitorEnter");
+            if (stackTrace == null || (!monitor && applicationFrame(stackTrace) == null)) {
+                return;
+            }
+            double millis = event.getDuration().toNanos() / 1e6;
+            double[] waits = contention.computeIfAbsent(site(stackTrace), key -> new double[3]);
+            waits[0]++;
+            waits[1] += millis;
+            waits[2] = Math.max(waits[2], millis);
+        }
+
+        private synchronized void collection(RecordedEvent event) {
+            collections++;
+            totalPauseMillis += event.getDuration("sumOfPauses").toNanos() / 1e6;
+            longestPauseMillis = Math.max(longestPauseMillis, event.getDuration("longestPause").toNanos() / 1e6);
+        }
+
+        private synchronized Profile profile() {
+            List<Contention> lockContention = contention.entrySet().stream()
+                    .map(entry -> new Contention(entry.getKey(), (long) entry.getValue()[0], entry.getValue()[1], entry.getValue()[2]))
+                    .sorted(Comparator.comparingDouble(Contention::totalMillis).reversed())
+                    .limit(top)
+                    .toList();
+            return new Profile(running ? "running" : "completed", startedAt, duration.toSeconds(), executionSamples,
+                    new TreeMap<>(threads), top(hotMethods), top(applicationMethods), top(eventLoopMethods),
+                    top(allocationSites), lockContention,
+                    new GcPauses(collections, totalPauseMillis, longestPauseMillis), recorded);
+        }
+
+        private List<Hotspot> top(Map<String, Long> weights) {
+            long total = weights.values().stream().mapToLong(Long::longValue).sum();
+            return weights.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(top)
+                    .map(entry -> new Hotspot(entry.getKey(), entry.getValue(), (double) entry.getValue() / total))
+                    .toList();
+        }
+
+        /**
+         * Innermost application frame, or the innermost frame if no application code is on the stack
+         */
+        private String site(RecordedStackTrace stackTrace) {
+            RecordedFrame application = applicationFrame(stackTrace);
+            RecordedFrame frame = application != null ? application : stackTrace.getFrames().get(0);
+            return method(frame) + ":" + frame.getLineNumber();
+        }
+
+        /**
+         * Innermost frame of the application packages, leaving out the profiler itself
+         */
+        private RecordedFrame applicationFrame(RecordedStackTrace stackTrace) {
+            for (RecordedFrame frame : stackTrace.getFrames()) {
+                String type = frame.isJavaFrame() ? frame.getMethod().getType().getName() : "";
+                if (type.startsWith(applicationPackage) && !type.equals(PROFILER) && !type.startsWith(PROFILER + "$")) {
+                    return frame;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static String method(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+    }
+
+    private static String threadKind(RecordedThread thread) {
+        String name = thread == null || thread.getJavaName() == null ? "" : thread.getJavaName();
+        if (name.contains("event-loop") || name.startsWith("reactor-http") || name.contains("EventLoop")) {
+            return "netty";
+        }
+        if (name.startsWith("parallel-") || name.startsWith("boundedElastic-") || name.startsWith("single-")) {
+            return "reactor";
+        }
+        if (name.startsWith("http-nio")) {
+            return "tomcat";
+        }
+        return "other";
+    }
+}
@@ -0,0 +1,205 @@
+package com.backendtest.similarproducts.service;
+
+import com.backendtest.similarproducts.client.BlockingProductClient;
+import com.backendtest.similarproducts.logging.RateLimitedLogger;
+import com.backendtest.similarproducts.model.ProductDetail;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service for handling similar products as plain blocking code, one virtual thread per detail lookup
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "service.execution-mode", havingValue = "virtual-threads")
+public class BlockingSimilarProductService {
+    private final Duration requestTimeout;
+    private final int overFetch;
+    private final String cacheName;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${log.message.similar-products-debug}")
+    private String logDebugSimilarProducts;
+
+    @Value("${log.message.warn-not-found}")
+    private String logWarnNotFound;
+
+    @Value("${log.message.debug-no-similar}")
+    private String logDebugNoSimilar;
+
+    @Value("${log.message.debug-retrieved}")
+    private String logDebugRetrieved;
+
+    @Value("${log.message.warn-timeout}")
+    private String logWarnTimeout;
+
+    @Value("${log.message.error-similar-detail}")
+    private String logErrorSimilarDetail;
+
+    @Value("${log.message.warn-error-retrieve}")
+    private String logWarnErrorRetrieve;
+
+    private final RateLimitedLogger errorLog = new RateLimitedLogger(log);
+
+    private final BlockingProductClient productClient;
+    private final SimilarProductsIndex similarProductsIndex;
+    private final CacheManager cacheManager;
+
+    public BlockingSimilarProductService(
+            BlockingProductClient productClient,
+            SimilarProductsIndex similarProductsIndex,
+            CacheManager cacheManager,
+            @Value("${webclient.response-timeout:1500}") int responseTimeout,
+            @Value("${service.over-fetch:2}") int overFetch,
+            @Value("${cache.name.similar-products:similarProducts}") String cacheName) {
+        this.productClient = productClient;
+        this.similarProductsIndex = similarProductsIndex;
+        this.cacheManager = cacheManager;
+        this.requestTimeout = Duration.ofMillis(responseTimeout);
+        this.overFetch = overFetch;
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * Get similar products for a given product ID
+     * @param productId Product ID to find similar products for
+     * @return List of similar product details, in the order of the similar IDs
+     */
+    @Cacheable(value = "similarProducts")
+    public List<ProductDetail> getSimilarProducts(String productId) {
+        log.debug(logDebugSimilarProducts, productId);
+        return fetchSimilarProducts(productId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the first similar products for a given product ID.
+     * Sliced from the cached full list when there is one; otherwise only the first IDs are fetched,
+     * {@code service.over-fetch} more at a time to backfill the missing ones. Only full lists are cached.
+     * @param productId Product ID to find similar products for
+     * @param limit Maximum number of similar products
+     * @return First similar product details, in the order of the similar IDs
+     */
+    @SuppressWarnings("unchecked")
+    public List<ProductDetail> getSimilarProducts(String productId, int limit) {
+        log.debug(logDebugSimilarProducts, productId);
+        Cache cache = cacheManager.getCache(cacheName);
+        Cache.ValueWrapper cached = cache != null ? cache.get(productId) : null;
+        if (cached != null && cached.get() != null) {
+            List<ProductDetail> products = (List<ProductDetail>) cached.get();
+            return products.size() <= limit ? products : products.subList(0, limit);
+        }
+        return fetchSimilarProducts(productId, limit);
+    }
+
+    /**
+     * Fetch the details of the first similar products, caching the list when it is complete
+     * @param productId Product ID to find similar products for
+     * @param limit Maximum number of similar products, {@link Integer#MAX_VALUE} for all of them
+     * @return Similar product details, in the order of the similar IDs
+     * @throws DegradedResultException With the products found, if the product API failed or timed out
+     */
+    private List<ProductDetail> fetchSimilarProducts(String productId, int limit) {
+        List<String> ids;
+        try {
+            if (productClient.getProductDetail(productId) == null) {
+                errorLog.warn(logWarnNotFound, productId);
+                return Collections.emptyList();
+            }
+            ids = productClient.getSimilarProductIds(productId);
+        } catch (RuntimeException e) {
+            errorLog.warn(logWarnErrorRetrieve, productId, e.getMessage());
+            throw new DegradedResultException(e.getMessage(), Collections.emptyList());
+        }
+        similarProductsIndex.register(productId, ids);
+        if (ids.isEmpty()) {
+            log.debug(logDebugNoSimilar, productId);
+            return Collections.emptyList();
+        }
+
+        long deadline = System.nanoTime() + requestTimeout.toNanos();
+        AtomicBoolean degraded = new AtomicBoolean();
+        List<ProductDetail> products = new ArrayList<>(Math.min(limit, ids.size()));
+        int next = 0;
+        while (products.size() < limit && next < ids.size() && System.nanoTime() < deadline) {
+            // Fetch the missing ones plus the over-fetch margin, then keep them in ID order
+            int end = Math.min(ids.size(), next + (limit == Integer.MAX_VALUE ? ids.size() : limit - products.size() + overFetch));
+            List<Future<ProductDetail>> details = new ArrayList<>(end - next);
+            for (String id : ids.subList(next, end)) {
+                details.add(executor.submit(() -> productClient.getProductDetail(id)));
+            }
+            for (int i = 0; i < details.size(); i++) {
+                ProductDetail product = awaitDetail(details.get(i), ids.get(next + i), deadline, degraded);
+                if (product != null && products.size() < limit) {
+                    products.add(product);
+                }
+            }
+            next = end;
+        }
+
+        if (degraded.get() || (products.size() < limit && next < ids.size())) {
+            throw new DegradedResultException("Similar products of " + productId + " are incomplete", products);
+        }
+        if (limit != Integer.MAX_VALUE && limit >= ids.size()) {
+            cacheFullList(productId, products);
+        }
+        log.debug(logDebugRetrieved, products.size(), productId);
+        return products;
+    }
+
+    /**
+     * Store a list fetched through a limited request that turned out to contain all the similar products
+     */
+    private void cacheFullList(String productId, List<ProductDetail> products) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.put(productId, products);
+        }
+    }
+
+    /**
+     * Wait for a detail lookup until the shared deadline of the request
+     * @param detail Pending detail lookup
+     * @param productId Product ID being looked up
+     * @param deadline Deadline in {@link System#nanoTime()} units
+     * @param degraded Flag of the list, set if the detail failed or timed out rather than not existing
+     * @return Product detail or null if not found, failed or timed out
+     */
+    private ProductDetail awaitDetail(Future<ProductDetail> detail, String productId, long deadline, AtomicBoolean degraded) {
+        try {
+            return detail.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            detail.cancel(true);
+            errorLog.warn(logWarnTimeout, productId);
+        } catch (ExecutionException e) {
+            errorLog.warn(logErrorSimilarDetail, productId, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            detail.cancel(true);
+        }
+        degraded.set(true);
+        return null;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,134 @@
+package com.backendtest.similarproducts.service;
+
+import com.backendtest.similarproducts.client.ProductClient;
+import com.backendtest.similarproducts.event.ProductChangeEvent;
+import com.backendtest.similarproducts.event.ProductEventSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service evicting or refreshing cached product data when the product domain pushes a change,
+ * cascading to every cached similar products list that contains the product
+ */
+@Slf4j
+@Service
+public class CacheInvalidationService {
+
+    @Value("${log.message.cache-invalidated}")
+    private String logCacheInvalidated;
+
+    @Value("${log.message.error-invalidation-event}")
+    private String logErrorInvalidationEvent;
+
+    private final CacheManager cacheManager;
+    private final ProductClient productClient;
+    private final SimilarProductsIndex similarProductsIndex;
+    private final List<ProductEventSource> eventSources;
+    private final String cacheSimilarProducts;
+    private final String cacheProductDetails;
+    private final String cacheSimilarIds;
+    private Disposable subscription;
+
+    public CacheInvalidationService(
+            CacheManager cacheManager,
+            ProductClient productClient,
+            SimilarProductsIndex similarProductsIndex,
+            List<ProductEventSource> eventSources,
+            @Value("${cache.name.similar-products:similarProducts}") String cacheSimilarProducts,
+            @Value("${cache.name.product-details:productDetails}") String cacheProductDetails,
+            @Value("${cache.name.similar-ids:similarIds}") String cacheSimilarIds) {
+        this.cacheManager = cacheManager;
+        this.productClient = productClient;
+        this.similarProductsIndex = similarProductsIndex;
+        this.eventSources = eventSources;
+        this.cacheSimilarProducts = cacheSimilarProducts;
+        this.cacheProductDetails = cacheProductDetails;
+        this.cacheSimilarIds = cacheSimilarIds;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        subscription = Flux.fromIterable(eventSources)
+                .flatMap(source -> source.events()
+                        .onErrorResume(error -> {
+                            log.error(logErrorInvalidationEvent, source, error.getMessage());
+                            return Flux.empty();
+                        }))
+                .concatMap(event -> invalidate(event)
+                        .onErrorResume(error -> {
+                            log.error(logErrorInvalidationEvent, event, error.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void unsubscribe() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Invalidate the cached data of a product
+     * @param event Change to apply
+     * @return Products whose cached similar products list was evicted
+     */
+    public Mono<List<String>> invalidate(ProductChangeEvent event) {
+        String productId = event.getProductId();
+        Mono<Set<String>> parents;
+        if (event.getType() == ProductChangeEvent.Type.DETAIL) {
+            evict(cacheProductDetails, productId);
+            parents = similarProductsIndex.removeParents(productId);
+        } else {
+            evict(cacheSimilarIds, productId);
+            parents = Mono.just(Set.of());
+        }
+        evict(cacheSimilarProducts, productId);
+
+        return parents.map(dependents -> {
+            List<String> evictedLists = new ArrayList<>();
+            evictedLists.add(productId);
+            dependents.forEach(parent -> evict(cacheSimilarProducts, parent));
+            evictedLists.addAll(dependents);
+
+            if (event.isRefresh()) {
+                refresh(event);
+            }
+
+            log.info(logCacheInvalidated, event.getType(), productId, evictedLists.size());
+            return evictedLists;
+        });
+    }
+
+    /**
+     * Load the product data again so the next request is served from the cache. A failed load is already
+     * logged by the client and leaves the entry to be loaded by the next request.
+     */
+    private void refresh(ProductChangeEvent event) {
+        if (event.getType() == ProductChangeEvent.Type.DETAIL) {
+            productClient.getProductDetail(event.getProductId()).onErrorComplete().subscribe();
+        } else {
+            productClient.getSimilarProductIds(event.getProductId()).onErrorComplete().subscribe();
+        }
+    }
+
+    private void evict(String cacheName, String key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+}
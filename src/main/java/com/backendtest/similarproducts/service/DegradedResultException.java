@@ -0,0 +1,27 @@
+package com.backendtest.similarproducts.service;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+
+import java.util.List;
+
+/**
+ * Similar products result built while the product API failed or timed out: the products it did return can
+ * still be served, but neither the service cache nor the clients may keep them. Stackless, like
+ * {@link com.backendtest.similarproducts.client.UpstreamStatusException}.
+ */
+public class DegradedResultException extends RuntimeException {
+
+    private final transient List<ProductDetail> products;
+
+    public DegradedResultException(String message, List<ProductDetail> products) {
+        super(message, null, false, false);
+        this.products = products;
+    }
+
+    /**
+     * Products found before the failure, possibly none
+     */
+    public List<ProductDetail> getProducts() {
+        return products;
+    }
+}
@@ -1,12 +1,15 @@
 package com.backendtest.similarproducts.service;
 
 import com.backendtest.similarproducts.client.ProductClient;
+import com.backendtest.similarproducts.logging.RateLimitedLogger;
 import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.tuning.PerformanceSettings;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
@@ -14,7 +17,9 @@ import reactor.core.scheduler.Schedulers;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeoutException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service for handling similar products
@@ -22,10 +27,9 @@ import java.util.concurrent.TimeoutException;
 @Slf4j
 @Service
 public class SimilarProductService {
-    private final int parallelRails;
-    private final Duration requestTimeout;
     private final Duration cacheDuration;
-    private final int timeoutMultiplier;
+    private final int overFetch;
+    private final String cacheName;
 
     
     @Value("${log.message.similar-products-debug}")
@@ -43,114 +47,173 @@ public class SimilarProductService {
     @Value("${log.message.warn-error-retrieve}")
     private String logWarnErrorRetrieve;
     
-    @Value("${log.message.warn-timeout}")
-    private String logWarnTimeout;
-    
-    @Value("${log.message.warn-similar-not-found}")
-    private String logWarnSimilarNotFound;
-    
-    @Value("${log.message.error-similar-detail}")
-    private String logErrorSimilarDetail;
-    
     @Value("${log.message.warn-error-exists}")
     private String logWarnErrorExists;
 
+    @Value("${log.message.warn-timeout-similar}")
+    private String logWarnTimeoutSimilar;
+
+    private final RateLimitedLogger errorLog = new RateLimitedLogger(log);
+
     private final ProductClient productClient;
+    private final SimilarProductsIndex similarProductsIndex;
+    private final CacheManager cacheManager;
+    private final PerformanceSettings settings;
 
     public SimilarProductService(
             ProductClient productClient,
-            @Value("${webclient.response-timeout:1500}") int responseTimeout,
-            @Value("${service.parallel-rails:4}") int parallelRails,
+            SimilarProductsIndex similarProductsIndex,
+            CacheManager cacheManager,
+            PerformanceSettings settings,
             @Value("${cache.duration.minutes:10}") int cacheDurationMinutes,
             @Value("${cache.name.similar-products:similarProducts}") String cacheName,
-            @Value("${cache.name.product-detail-optimized:productDetailOptimized}") String cacheNameOptimized,
-            @Value("${webclient.timeout-multiplier:2}") int timeoutMultiplier) {
+            @Value("${service.over-fetch:2}") int overFetch) {
         this.productClient = productClient;
-        this.requestTimeout = Duration.ofMillis(responseTimeout);
-        this.parallelRails = parallelRails * Runtime.getRuntime().availableProcessors();
+        this.similarProductsIndex = similarProductsIndex;
+        this.cacheManager = cacheManager;
+        this.settings = settings;
+        this.cacheName = cacheName;
+        this.overFetch = overFetch;
         this.cacheDuration = Duration.ofMinutes(cacheDurationMinutes);
-        this.timeoutMultiplier = timeoutMultiplier;
     }
 
     /**
      * Get similar products for a given product ID
      * @param productId Product ID to find similar products for
-     * @return List of similar product details
+     * @return List of similar product details, in the order of the similar IDs
      */
     @Cacheable(value = "similarProducts")
     public Mono<List<ProductDetail>> getSimilarProducts(String productId) {
         log.debug(logDebugSimilarProducts, productId);
-        
+        return fetchSimilarProducts(productId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the first similar products for a given product ID.
+     * Sliced from the cached full list when there is one; otherwise only the first IDs are fetched,
+     * {@code service.over-fetch} more at a time to backfill the missing ones. Only full lists are cached.
+     * @param productId Product ID to find similar products for
+     * @param limit Maximum number of similar products
+     * @return First similar product details, in the order of the similar IDs
+     */
+    public Mono<List<ProductDetail>> getSimilarProducts(String productId, int limit) {
+        log.debug(logDebugSimilarProducts, productId);
+        Cache cache = cacheManager.getCache(cacheName);
+        CompletableFuture<?> cached = cache != null ? cache.retrieve(productId) : null;
+        if (cached == null) {
+            return fetchSimilarProducts(productId, limit);
+        }
+        return Mono.fromFuture(cached, true)
+                .map(value -> value instanceof Cache.ValueWrapper wrapper ? Optional.ofNullable(wrapper.get()) : Optional.of(value))
+                .flatMap(value -> value
+                        .map(products -> Mono.just(first(cast(products), limit)))
+                        .orElseGet(() -> fetchSimilarProducts(productId, limit)))
+                .switchIfEmpty(Mono.defer(() -> fetchSimilarProducts(productId, limit)));
+    }
+
+    /**
+     * Fetch the details of the first similar products, caching the list when it is complete
+     * @param productId Product ID to find similar products for
+     * @param limit Maximum number of similar products, {@link Integer#MAX_VALUE} for all of them
+     * @return Similar product details, in the order of the similar IDs, or a {@link DegradedResultException}
+     * with the products found if the product API failed or timed out, so that the list is not cached
+     */
+    private Mono<List<ProductDetail>> fetchSimilarProducts(String productId, int limit) {
         return checkProductExists(productId)
                 .flatMap(exists -> {
                     if (!exists) {
-                        log.warn(logWarnNotFound, productId);
+                        errorLog.warn(logWarnNotFound, productId);
                         return Mono.just(Collections.emptyList());
                     }
+                    Duration requestTimeout = settings.getResponseTimeout();
                     return productClient.getSimilarProductIds(productId)
-                        .timeout(requestTimeout)
-                        .flatMapMany(ids -> {
+                        .timeout(requestTimeout, Mono.error(() -> {
+                            errorLog.warn(logWarnTimeoutSimilar, productId);
+                            return new DegradedResultException("Timed out getting similar IDs of " + productId, Collections.emptyList());
+                        }))
+                        .doOnNext(ids -> similarProductsIndex.register(productId, ids))
+                        .flatMap(ids -> {
                             if (ids.isEmpty()) {
                                 log.debug(logDebugNoSimilar, productId);
-                                return Flux.empty();
                             }
-                            
+                            boolean complete = limit >= ids.size();
+                            int concurrency = complete ? settings.getParallelism() : limit + overFetch;
+                            AtomicBoolean degraded = new AtomicBoolean();
                             return Flux.fromIterable(ids)
-                                .parallel(parallelRails)
-                                .runOn(Schedulers.boundedElastic())
-                                .flatMap(this::getProductDetailOptimized)
-                                .sequential();
+                                .flatMapSequential(id -> getProductDetailSafely(id, degraded), Math.max(1, concurrency))
+                                .take(limit)
+                                .collectList()
+                                .flatMap(products -> degraded.get()
+                                        ? Mono.error(new DegradedResultException("Similar products of " + productId + " are incomplete", products))
+                                        : Mono.just(products))
+                                .doOnNext(products -> {
+                                    if (complete && limit != Integer.MAX_VALUE) {
+                                        cacheFullList(productId, products);
+                                    }
+                                });
                         })
-                        .collectList()
-                        .timeout(requestTimeout.multipliedBy(timeoutMultiplier))
+                        .timeout(requestTimeout.multipliedBy(settings.getTimeoutMultiplier()), Mono.error(() -> {
+                            errorLog.warn(logWarnTimeoutSimilar, productId);
+                            return new DegradedResultException("Timed out getting similar products of " + productId, Collections.emptyList());
+                        }))
                         .doOnSuccess(products -> 
                             log.debug(logDebugRetrieved, products.size(), productId)
                         )
-                        .onErrorReturn(error -> {
-                            log.warn(logWarnErrorRetrieve, productId, error.getMessage());
-                            return true;
-                        }, Collections.emptyList())
+                        .onErrorMap(error -> !(error instanceof DegradedResultException), error -> {
+                            errorLog.warn(logWarnErrorRetrieve, productId, error.getMessage());
+                            return new DegradedResultException(error.getMessage(), Collections.emptyList());
+                        })
                         .cache(cacheDuration);
                 });
     }
 
+    /**
+     * Store a list fetched through a limited request that turned out to contain all the similar products
+     */
+    private void cacheFullList(String productId, List<ProductDetail> products) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.put(productId, products);
+        }
+    }
+
+    private static List<ProductDetail> first(List<ProductDetail> products, int limit) {
+        return products.size() <= limit ? products : products.subList(0, limit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ProductDetail> cast(Object products) {
+        return (List<ProductDetail>) products;
+    }
+
     /**
      * Check if product exists
      * @param productId Product ID to check
-     * @return Boolean indicating if product exists
+     * @return Boolean indicating if product exists, or a {@link DegradedResultException} if the lookup failed
      */
     private Mono<Boolean> checkProductExists(String productId) {
         return productClient.getProductDetail(productId)
                 .map(product -> true)
-                .onErrorReturn(WebClientResponseException.NotFound.class, false)
+                .defaultIfEmpty(false)
                 .onErrorResume(error -> {
-                    if (!(error instanceof WebClientResponseException.NotFound)) {
-                        log.warn(logWarnErrorExists, productId, error.getMessage());
-                    }
-                    return Mono.just(false);
+                    errorLog.warn(logWarnErrorExists, productId, error.getMessage());
+                    return Mono.error(new DegradedResultException(error.getMessage(), Collections.emptyList()));
                 });
     }
 
     /**
-     * Get product detail safely with improved performance
+     * Get a similar product detail, cached by the product client, without failing the list
      * @param productId Product ID to get details for
-     * @return Product detail or empty if not found or error
+     * @param degraded Flag of the list, set if the detail failed or timed out rather than not existing
+     * @return Product detail or empty if not found or error. The product client already times the call out
+     * and logs its failures.
      */
-    @Cacheable(value = "productDetailOptimized")
-    public Mono<ProductDetail> getProductDetailOptimized(String productId) {
+    private Mono<ProductDetail> getProductDetailSafely(String productId, AtomicBoolean degraded) {
         return productClient.getProductDetail(productId)
-                .timeout(requestTimeout)
                 .onErrorResume(error -> {
-                    if (error instanceof TimeoutException) {
-                        log.warn(logWarnTimeout, productId);
-                    } else if (error instanceof WebClientResponseException.NotFound) {
-                        log.warn(logWarnSimilarNotFound, productId);
-                    } else {
-                        log.warn(logErrorSimilarDetail, productId, error.getMessage());
-                    }
+                    degraded.set(true);
                     return Mono.empty();
                 })
-                .publishOn(Schedulers.boundedElastic())
-                .cache(cacheDuration);
+                .publishOn(Schedulers.boundedElastic());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.backendtest.similarproducts.service;
+
+import com.backendtest.similarproducts.cache.SampledCaffeineCache;
+import com.backendtest.similarproducts.cache.TwoLevelCache;
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.trace.TraceRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Serves fully cached similar products requests inline, without building the reactive pipeline:
+ * from the cached list, or assembled from the cached similar IDs and details when only the list is missing
+ * (expired or evicted by an invalidation). Only values already loaded in the local caches count; anything
+ * else, including a load in flight, an entry only in the shared tier or a product without detail, goes through
+ * the pipeline, which is the only one reaching the shared tier.
+ * The {@code similar.products.requests} timer, tagged {@code path=fast|async}, shows the share and latency of each path.
+ * Served requests are also handed to the {@link TraceRecorder}.
+ */
+@Component
+public class SimilarProductsFastPath {
+
+    private final CacheManager cacheManager;
+    private final SimilarProductsIndex similarProductsIndex;
+    private final TraceRecorder traceRecorder;
+    private final String cacheSimilarProducts;
+    private final String cacheSimilarIds;
+    private final String cacheProductDetails;
+    private final Timer fastTimer;
+    private final Timer asyncTimer;
+
+    public SimilarProductsFastPath(
+            CacheManager cacheManager,
+            SimilarProductsIndex similarProductsIndex,
+            MeterRegistry meterRegistry,
+            TraceRecorder traceRecorder,
+            @Value("${cache.name.similar-products:similarProducts}") String cacheSimilarProducts,
+            @Value("${cache.name.similar-ids:similarIds}") String cacheSimilarIds,
+            @Value("${cache.name.product-details:productDetails}") String cacheProductDetails) {
+        this.cacheManager = cacheManager;
+        this.similarProductsIndex = similarProductsIndex;
+        this.traceRecorder = traceRecorder;
+        this.cacheSimilarProducts = cacheSimilarProducts;
+        this.cacheSimilarIds = cacheSimilarIds;
+        this.cacheProductDetails = cacheProductDetails;
+        this.fastTimer = requestTimer(meterRegistry, "fast");
+        this.asyncTimer = requestTimer(meterRegistry, "async");
+    }
+
+    /**
+     * Serve a request from the caches when everything it needs is loaded, otherwise through the pipeline
+     * @param productId Product ID to find similar products for
+     * @param limit Maximum number of similar products, {@link Integer#MAX_VALUE} for all of them
+     * @param pipeline Reactive pipeline serving the request on a miss
+     * @return Similar product details
+     */
+    public Mono<List<ProductDetail>> serve(String productId, int limit, Supplier<Mono<List<ProductDetail>>> pipeline) {
+        long start = System.nanoTime();
+        Optional<List<ProductDetail>> cached = lookup(productId);
+        if (cached.isPresent()) {
+            List<ProductDetail> products = cached.get();
+            long elapsed = System.nanoTime() - start;
+            fastTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            traceRecorder.request(productId, products, true, elapsed);
+            return Mono.just(products.size() <= limit ? products : products.subList(0, limit));
+        }
+        return pipeline.get()
+                .doOnNext(products -> traceRecorder.request(productId, products, false, System.nanoTime() - start))
+                .doFinally(signal -> asyncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Similar products of a product, if they can be answered from loaded cache entries only.
+     * A list assembled from the similar IDs and details is cached for the next requests.
+     * The lookups are recorded in the miss ratio curves only when the request is served here; otherwise
+     * the pipeline records its own, so that each logical lookup counts once.
+     */
+    Optional<List<ProductDetail>> lookup(String productId) {
+        Cache similarProducts = cacheManager.getCache(cacheSimilarProducts);
+        if (loaded(similarProducts, productId) instanceof List<?> list) {
+            record(similarProducts, productId);
+            return Optional.of(cast(list));
+        }
+        Cache productDetails = cacheManager.getCache(cacheProductDetails);
+        Cache similarIds = cacheManager.getCache(cacheSimilarIds);
+        if (!(loaded(productDetails, productId) instanceof ProductDetail)
+                || !(loaded(similarIds, productId) instanceof List<?> ids)) {
+            return Optional.empty();
+        }
+        List<ProductDetail> products = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            if (!(loaded(productDetails, id) instanceof ProductDetail detail)) {
+                return Optional.empty();
+            }
+            products.add(detail);
+        }
+        record(similarProducts, productId);
+        record(productDetails, productId);
+        record(similarIds, productId);
+        for (Object id : ids) {
+            record(productDetails, id);
+        }
+        similarProductsIndex.register(productId, cast(ids));
+        if (similarProducts != null) {
+            similarProducts.put(productId, products);
+        }
+        return Optional.of(products);
+    }
+
+    /**
+     * Value of a cache entry if it is already loaded locally, without waiting nor triggering a load
+     */
+    private static Object loaded(Cache cache, Object key) {
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            return twoLevelCache.peek(key);
+        }
+        if (cache instanceof CaffeineCache caffeineCache) {
+            return caffeineCache.getNativeCache().getIfPresent(key);
+        }
+        if (cache == null) {
+            return null;
+        }
+        CompletableFuture<?> future = cache.retrieve(key);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        Object value = future.getNow(null);
+        return value instanceof Cache.ValueWrapper wrapper ? wrapper.get() : value;
+    }
+
+    /**
+     * Record a lookup served from a local cache in its miss ratio curve, if it has one
+     */
+    private static void record(Cache cache, Object key) {
+        Cache local = cache instanceof TwoLevelCache twoLevelCache ? twoLevelCache.getLocal() : cache;
+        if (local instanceof SampledCaffeineCache sampledCache) {
+            sampledCache.record(key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> cast(List<?> list) {
+        return (List<T>) list;
+    }
+
+    private static Timer requestTimer(MeterRegistry meterRegistry, String path) {
+        return Timer.builder("similar.products.requests")
+                .description("Similar products requests by serving path")
+                .tag("path", path)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,131 @@
+package com.backendtest.similarproducts.service;
+
+import com.backendtest.similarproducts.cache.L2Cache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reverse index from a similar product ID to the products whose similar list contains it,
+ * used to cascade invalidations to the cached similar products lists. With a shared L2 tier the index is
+ * also kept there, one set per similar ID, since a replica serving a list from L2 never builds it and an
+ * invalidation may reach a replica that never saw the list.
+ */
+@Slf4j
+@Component
+public class SimilarProductsIndex {
+
+    private final Cache<String, Set<String>> parentsBySimilarId;
+    @Nullable
+    private final L2Cache l2Cache;
+    private final String keyPrefix;
+    private final Duration l2Ttl;
+    private final Duration l2Timeout;
+
+    public SimilarProductsIndex(int maximumSize, int expirationSeconds) {
+        this(maximumSize, expirationSeconds, Ticker.systemTicker(), null, "", Duration.ZERO, Duration.ZERO);
+    }
+
+    @Autowired
+    public SimilarProductsIndex(
+            @Value("${cache.product-details.maximum-size:${cache.maximum-size:25000}}") int maximumSize,
+            @Value("${cache.similar-products.expiration:${cache.expiration:600}}") int expirationSeconds,
+            ObjectProvider<L2Cache> l2Cache,
+            @Value("${cache.l2.key-prefix:similarproducts:}") String keyPrefix,
+            @Value("${cache.l2.expiration:600}") int l2Expiration,
+            @Value("${cache.l2.timeout:50}") int l2Timeout) {
+        this(maximumSize, expirationSeconds, Ticker.systemTicker(), l2Cache.getIfAvailable(), keyPrefix,
+                Duration.ofSeconds(l2Expiration), Duration.ofMillis(l2Timeout));
+    }
+
+    SimilarProductsIndex(int maximumSize, int expirationSeconds, Ticker ticker) {
+        this(maximumSize, expirationSeconds, ticker, null, "", Duration.ZERO, Duration.ZERO);
+    }
+
+    SimilarProductsIndex(int maximumSize, int expirationSeconds, Ticker ticker, @Nullable L2Cache l2Cache,
+                         String keyPrefix, Duration l2Ttl, Duration l2Timeout) {
+        this.parentsBySimilarId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expirationSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .build();
+        this.l2Cache = l2Cache;
+        this.keyPrefix = keyPrefix + "parents:";
+        this.l2Ttl = l2Ttl;
+        this.l2Timeout = l2Timeout;
+    }
+
+    /**
+     * Follow a tuned product details cache size, keeping the indexed entries
+     * @param maximumSize Maximum number of indexed similar IDs
+     */
+    public void resize(long maximumSize) {
+        parentsBySimilarId.policy().eviction().ifPresent(eviction -> eviction.setMaximum(maximumSize));
+    }
+
+    /**
+     * Follow a tuned similar products TTL, so the index outlives the lists it points to
+     * @param expiration Time an indexed similar ID lives after its last registration
+     */
+    public void expire(Duration expiration) {
+        parentsBySimilarId.policy().expireAfterWrite().ifPresent(expiry -> expiry.setExpiresAfter(expiration));
+    }
+
+    /**
+     * Record the similar IDs a similar products list is built from, in the shared tier asynchronously
+     * @param productId Product the list belongs to
+     * @param similarIds Similar product IDs of the list
+     */
+    public void register(String productId, List<String> similarIds) {
+        for (String similarId : similarIds) {
+            Set<String> parents = parentsBySimilarId.get(similarId, id -> ConcurrentHashMap.newKeySet());
+            parents.add(productId);
+            parentsBySimilarId.put(similarId, parents);
+            if (l2Cache != null) {
+                l2Cache.addToSet(keyPrefix + similarId, productId, l2Ttl)
+                        .exceptionally(error -> {
+                            log.debug("L2 index write failed for {}: {}", similarId, error.getMessage());
+                            return null;
+                        });
+            }
+        }
+    }
+
+    /**
+     * Remove and return the products whose similar list contains the given product, as recorded by this
+     * replica and, with a shared tier, by any replica. A failed shared lookup leaves the local ones.
+     * @param similarId Product ID to look up
+     * @return Products whose cached similar list depends on it
+     */
+    public Mono<Set<String>> removeParents(String similarId) {
+        Set<String> local = parentsBySimilarId.asMap().remove(similarId);
+        Set<String> parents = local != null ? new HashSet<>(local) : new HashSet<>();
+        if (l2Cache == null) {
+            return Mono.just(parents);
+        }
+        return Mono.fromFuture(() -> l2Cache.removeSet(keyPrefix + similarId))
+                .timeout(l2Timeout)
+                .map(shared -> {
+                    parents.addAll(shared);
+                    return parents;
+                })
+                .onErrorResume(error -> {
+                    log.debug("L2 index lookup failed for {}: {}", similarId, error.getMessage());
+                    return Mono.just(parents);
+                });
+    }
+}
@@ -0,0 +1,43 @@
+package com.backendtest.similarproducts.trace;
+
+import java.util.List;
+
+/**
+ * Event of a request trace, as recorded by {@link TraceRecorder} and replayed by {@link TraceSimulator}
+ */
+public sealed interface TraceEvent {
+
+    /**
+     * Epoch milliseconds of the event
+     */
+    long timeMillis();
+
+    /**
+     * Similar products request served by the application
+     * @param productId Requested product ID
+     * @param similarIds IDs of the similar products served
+     * @param cached Whether it was served from loaded cache entries only, without calling the product API
+     * @param latencyMicros Time to serve the request
+     */
+    record Request(long timeMillis, String productId, List<String> similarIds, boolean cached,
+                   long latencyMicros) implements TraceEvent {
+    }
+
+    /**
+     * Call to the product API
+     * @param route Route template of the call
+     * @param path Request path
+     * @param status HTTP status of the response, 0 if the call failed or was cancelled
+     * @param latencyMicros Total time of the call
+     */
+    record Downstream(long timeMillis, String route, String path, int status,
+                      long latencyMicros) implements TraceEvent {
+    }
+
+    /**
+     * Start of a recording session: string references of the following events restart
+     * @param sampling One product out of this many is recorded
+     */
+    record Session(long timeMillis, int sampling) implements TraceEvent {
+    }
+}
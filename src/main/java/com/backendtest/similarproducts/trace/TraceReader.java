@@ -0,0 +1,131 @@
+package com.backendtest.similarproducts.trace;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decodes a trace written by {@link TraceWriter}. A record cut short at the end of the trace, left by an
+ * application stopped while writing, ends the trace.
+ */
+public class TraceReader implements Closeable {
+
+    private final InputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private long lastMillis;
+
+    public TraceReader(InputStream in) throws IOException {
+        this.in = in;
+        byte[] magic = in.readNBytes(TraceWriter.MAGIC.length);
+        if (!Arrays.equals(magic, TraceWriter.MAGIC)) {
+            throw new IOException("Not a similar products trace");
+        }
+        int version = in.read();
+        if (version != TraceWriter.VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+    }
+
+    /**
+     * Read every event of a trace file
+     */
+    public static void read(Path file, Consumer<TraceEvent> consumer) throws IOException {
+        try (TraceReader reader = new TraceReader(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (TraceEvent event = reader.next(); event != null; event = reader.next()) {
+                consumer.accept(event);
+            }
+        }
+    }
+
+    /**
+     * @return Next event, null at the end of the trace
+     */
+    public TraceEvent next() throws IOException {
+        try {
+            while (true) {
+                int tag = in.read();
+                switch (tag) {
+                    case -1 -> {
+                        return null;
+                    }
+                    case TraceWriter.STRING -> strings.add(new String(readBytes((int) readVarLong()), StandardCharsets.UTF_8));
+                    case TraceWriter.SESSION -> {
+                        strings.clear();
+                        lastMillis = readVarLong();
+                        return new TraceEvent.Session(lastMillis, (int) readVarLong());
+                    }
+                    case TraceWriter.REQUEST -> {
+                        long timeMillis = readTime();
+                        String productId = string();
+                        boolean cached = (in.read() & TraceWriter.CACHED) != 0;
+                        long latencyMicros = readVarLong();
+                        int count = (int) readVarLong();
+                        List<String> similarIds = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            similarIds.add(string());
+                        }
+                        return new TraceEvent.Request(timeMillis, productId, similarIds, cached, latencyMicros);
+                    }
+                    case TraceWriter.DOWNSTREAM -> {
+                        long timeMillis = readTime();
+                        return new TraceEvent.Downstream(timeMillis, string(), string(), (int) readVarLong(), readVarLong());
+                    }
+                    default -> throw new IOException("Unknown trace record " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String string() throws IOException {
+        int index = (int) readVarLong();
+        if (index >= strings.size()) {
+            throw new IOException("Undefined trace string " + index);
+        }
+        return strings.get(index);
+    }
+
+    private long readTime() throws IOException {
+        long zigzag = readVarLong();
+        lastMillis += (zigzag >>> 1) ^ -(zigzag & 1);
+        return lastMillis;
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return bytes;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed trace varint");
+    }
+}
@@ -0,0 +1,225 @@
+package com.backendtest.similarproducts.trace;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records a sample of the similar products requests and product API calls to an append-only local trace file,
+ * to replay offline with {@link TraceSimulator}. Requests are sampled by product ID and calls by path, so that
+ * a sampled product is traced on every request. Serving threads only enqueue the events: a single writer
+ * thread encodes and appends them, and events are dropped, not waited for, when the queue is full.
+ * The {@code trace.events} counter, tagged {@code result=written|dropped}, shows the cost of the sampling rate.
+ */
+@Slf4j
+@Component
+public class TraceRecorder {
+
+    private final boolean enabled;
+    private final Path file;
+    private final int sampling;
+    private final int samplingMask;
+    private final long maxBytes;
+    private final int maxStrings;
+    private final Duration flushInterval;
+    private final BlockingQueue<TraceEvent> queue;
+    private final Counter written;
+    private final Counter dropped;
+    private volatile boolean recording;
+    private Scheduler scheduler;
+    private Disposable flusher;
+    private OutputStream out;
+    private TraceWriter writer;
+    private long initialBytes;
+
+    @Value("${log.message.trace-started}")
+    private String logTraceStarted;
+
+    @Value("${log.message.trace-limit}")
+    private String logTraceLimit;
+
+    @Value("${log.message.warn-trace-failed}")
+    private String logWarnTraceFailed;
+
+    public TraceRecorder(
+            MeterRegistry meterRegistry,
+            @Value("${trace.enabled:false}") boolean enabled,
+            @Value("${trace.file:similar-products.trace}") String file,
+            @Value("${trace.sampling:1}") int sampling,
+            @Value("${trace.max-bytes:104857600}") long maxBytes,
+            @Value("${trace.max-strings:100000}") int maxStrings,
+            @Value("${trace.buffer-size:8192}") int bufferSize,
+            @Value("${trace.flush-interval:1000}") int flushInterval) {
+        this.enabled = enabled;
+        this.file = Path.of(file);
+        this.sampling = Integer.highestOneBit(Math.max(1, sampling));
+        this.samplingMask = this.sampling - 1;
+        this.maxBytes = maxBytes;
+        this.maxStrings = maxStrings;
+        this.flushInterval = Duration.ofMillis(flushInterval);
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.written = events(meterRegistry, "written");
+        this.dropped = events(meterRegistry, "dropped");
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            initialBytes = Files.exists(file) ? Files.size(file) : 0;
+            if (initialBytes >= maxBytes) {
+                log.info(logTraceLimit, file, initialBytes);
+                return;
+            }
+            out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+            writer = new TraceWriter(out, initialBytes == 0, maxStrings);
+            writer.write(new TraceEvent.Session(System.currentTimeMillis(), sampling));
+        } catch (IOException e) {
+            log.warn(logWarnTraceFailed, file, e.getMessage());
+            return;
+        }
+        recording = true;
+        scheduler = Schedulers.newSingle("trace-writer");
+        flusher = Flux.interval(flushInterval, flushInterval, scheduler)
+                .subscribe(tick -> drain());
+        log.info(logTraceStarted, sampling, file);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flusher != null) {
+            flusher.dispose();
+            scheduler.dispose();
+        }
+        drain();
+        close();
+    }
+
+    /**
+     * Record a served similar products request, if its product is sampled
+     * @param productId Requested product ID
+     * @param products Similar products served
+     * @param cached Whether it was served from loaded cache entries only
+     * @param elapsedNanos Time to serve the request
+     */
+    public void request(String productId, List<ProductDetail> products, boolean cached, long elapsedNanos) {
+        if (!recording || !sampled(productId)) {
+            return;
+        }
+        List<String> similarIds = new ArrayList<>(products.size());
+        for (ProductDetail product : products) {
+            similarIds.add(product.getId());
+        }
+        enqueue(new TraceEvent.Request(System.currentTimeMillis(), productId, similarIds, cached, elapsedNanos / 1000));
+    }
+
+    /**
+     * Record a product API call, if its path is sampled
+     * @param route Route template of the call
+     * @param path Request path
+     * @param status HTTP status of the response, 0 if the call failed or was cancelled
+     * @param elapsedNanos Total time of the call
+     */
+    public void downstream(String route, String path, int status, long elapsedNanos) {
+        if (!recording || !sampled(path)) {
+            return;
+        }
+        enqueue(new TraceEvent.Downstream(System.currentTimeMillis(), route, path, status, elapsedNanos / 1000));
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    private boolean sampled(String key) {
+        return (spread(key.hashCode()) & samplingMask) == 0;
+    }
+
+    private void enqueue(TraceEvent event) {
+        if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Append the queued events to the trace file, stopping the recording at its size limit
+     */
+    private synchronized void drain() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            for (TraceEvent event = queue.poll(); event != null && recording; event = queue.poll()) {
+                writer.write(event);
+                written.increment();
+                if (initialBytes + writer.bytes() >= maxBytes) {
+                    log.info(logTraceLimit, file, initialBytes + writer.bytes());
+                    recording = false;
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            log.warn(logWarnTraceFailed, file, e.getMessage());
+            recording = false;
+        }
+        if (!recording) {
+            queue.clear();
+        }
+    }
+
+    private synchronized void close() {
+        recording = false;
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn(logWarnTraceFailed, file, e.getMessage());
+        }
+        out = null;
+        writer = null;
+    }
+
+    /**
+     * Murmur3 finalizer, so that sequential product IDs spread over the sampling buckets
+     */
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static Counter events(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("trace.events")
+                .description("Trace events by outcome: written to the trace file or dropped with a full queue")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
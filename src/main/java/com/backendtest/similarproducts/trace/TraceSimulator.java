@@ -0,0 +1,376 @@
+package com.backendtest.similarproducts.trace;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Random;
+import java.util.function.LongFunction;
+
+/**
+ * Replays a trace recorded by {@link TraceRecorder} against a cache and concurrency configuration, and predicts
+ * the hit ratio of each cache, the product API call rate and the request latency it would have had.
+ * <p>
+ * Every request goes through real Caffeine caches on a simulated clock, sized and expiring like the application
+ * ones and scaled down by the trace sampling, except the product details cache: the trace samples requests by
+ * product ID, not details by their ID, so it holds nearly every detail, each seen only from the sampled products.
+ * It keeps its full size and its hit ratio is a lower bound when the trace is sampled. A miss follows the application flow: the detail of the product,
+ * then its similar IDs, then the similar details with the configured parallelism, each call waiting for a free
+ * connection of the pool and lasting like a recorded call to the same path or route. Cache entries loading
+ * when requested again are waited for, not loaded twice. Local processing time is not modelled.
+ * <p>
+ * Run with {@code mvn -q compile exec:java -Dexec.mainClass=com.backendtest.similarproducts.trace.TraceSimulator
+ * -Dexec.args="trace=similar-products.trace cache.product-details.maximum-size=20000"}: the configuration comes
+ * from {@code application.properties}, overridden by the {@code key=value} arguments.
+ */
+public class TraceSimulator {
+
+    private static final String SIMILAR_PRODUCTS = "similar-products";
+    private static final String PRODUCT_DETAILS = "product-details";
+    private static final String SIMILAR_IDS = "similar-ids";
+
+    /**
+     * Policy of a simulated cache, before scaling by the trace sampling
+     */
+    public record CachePolicy(long maximumSize, Duration expiration, Duration idleExpiration) {
+    }
+
+    /**
+     * Configuration to replay a trace with
+     * @param caches Cache policies by cache property name
+     * @param maxConnections Connections of the product API pool
+     * @param acquisitionTimeout Maximum wait for a pool connection
+     * @param responseTimeout Maximum time of a product API call
+     * @param parallelism Similar product details fetched at once
+     * @param detailPath Path template of the product detail calls
+     * @param similarIdsPath Path template of the similar IDs calls
+     * @param defaultLatency Latency of calls to a route without recorded calls
+     */
+    public record Config(Map<String, CachePolicy> caches, int maxConnections, Duration acquisitionTimeout,
+                         Duration responseTimeout, int parallelism, String detailPath, String similarIdsPath,
+                         Duration defaultLatency) {
+
+        /**
+         * Configuration from application properties, with the same names and defaults as the application
+         */
+        public static Config from(Properties properties) {
+            Map<String, CachePolicy> caches = new LinkedHashMap<>();
+            for (String cache : List.of(SIMILAR_PRODUCTS, PRODUCT_DETAILS, SIMILAR_IDS)) {
+                caches.put(cache, new CachePolicy(
+                        Long.parseLong(property(properties, "cache." + cache + ".maximum-size",
+                                property(properties, "cache.maximum-size", "25000"))),
+                        Duration.ofSeconds(Long.parseLong(property(properties, "cache." + cache + ".expiration",
+                                property(properties, "cache.expiration", "600")))),
+                        Duration.ofSeconds(Long.parseLong(property(properties, "cache." + cache + ".idle-expiration", "0")))));
+            }
+            int processors = Integer.parseInt(property(properties, "simulator.processors",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            return new Config(caches,
+                    Integer.parseInt(property(properties, "webclient.max-connections", "1000")),
+                    Duration.ofMillis(Long.parseLong(property(properties, "webclient.acquisition-timeout", "1500"))),
+                    Duration.ofMillis(Long.parseLong(property(properties, "webclient.response-timeout", "1500"))),
+                    Integer.parseInt(property(properties, "service.parallel-rails", "4")) * processors,
+                    path(property(properties, "api.product.detail.url", "/product/{productId}")),
+                    path(property(properties, "api.product.similarids.url", "/product/{productId}/similarids")),
+                    Duration.ofMillis(Long.parseLong(property(properties, "simulator.default-latency", "10"))));
+        }
+
+        private static String property(Properties properties, String name, String defaultValue) {
+            String value = properties.getProperty(name);
+            return value == null || value.isBlank() ? defaultValue : value.trim();
+        }
+
+        private static String path(String url) {
+            return url.replaceFirst("^[a-zA-Z][a-zA-Z0-9+.-]*://[^/]*", "").replaceFirst("\\?.*", "");
+        }
+    }
+
+    /**
+     * Predicted and observed figures of a replayed trace. Rates are scaled back up by the trace sampling.
+     * @param hitRatios Predicted hit ratio by cache property name
+     * @param cachedRatio Predicted share of requests served without calling the product API
+     * @param observedCachedRatio Share of requests served from the caches when the trace was recorded
+     * @param sampling One product out of this many was traced
+     */
+    public record Report(long requests, double seconds, Map<String, Double> hitRatios, double cachedRatio,
+                         double observedCachedRatio, long downstreamCalls, double downstreamQps,
+                         double observedDownstreamQps, double[] latencyPercentiles, double[] observedLatencyPercentiles,
+                         long responseTimeouts, long acquisitionTimeouts, int sampling) {
+
+        static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+        public String format() {
+            StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                    "Replayed %d requests over %.1f s%n", requests, seconds));
+            hitRatios.forEach((cache, ratio) -> report.append(String.format(Locale.ROOT,
+                    "  %-28s %8.3f%n", cache + " hit ratio", ratio)));
+            report.append(String.format(Locale.ROOT, "  %-28s %8s %10s%n", "", "predicted", "observed"))
+                    .append(String.format(Locale.ROOT, "  %-28s %8.3f %10.3f%n", "served from cache", cachedRatio, observedCachedRatio))
+                    .append(String.format(Locale.ROOT, "  %-28s %8.1f %10.1f%n", "product API calls/s", downstreamQps, observedDownstreamQps));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                report.append(String.format(Locale.ROOT, "  %-28s %8.1f %10.1f%n",
+                        "latency p" + Math.round(PERCENTILES[i] * 100) + " (ms)",
+                        latencyPercentiles[i], observedLatencyPercentiles[i]));
+            }
+            return report.append(String.format(Locale.ROOT, "  %-28s %8d%n", "response timeouts", responseTimeouts))
+                    .append(String.format(Locale.ROOT, "  %-28s %8d%n", "pool acquisition timeouts", acquisitionTimeouts))
+                    .append(sampling > 1 ? String.format(Locale.ROOT,
+                            "  Traced 1 out of %d products: the %s cache is not scaled down and its hit ratio is a "
+                                    + "lower bound, details shared with untraced products being seen less often%n",
+                            sampling, PRODUCT_DETAILS) : "")
+                    .toString();
+        }
+    }
+
+    private final Config config;
+
+    public TraceSimulator(Config config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream defaults = TraceSimulator.class.getResourceAsStream("/application.properties")) {
+            if (defaults != null) {
+                properties.load(defaults);
+            }
+        }
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                properties.setProperty(arg.substring(0, separator).replaceFirst("^--", ""), arg.substring(separator + 1));
+            }
+        }
+        String trace = properties.getProperty("trace", properties.getProperty("trace.file"));
+        if (trace == null) {
+            throw new IllegalArgumentException("Missing trace=<file> argument");
+        }
+        System.out.print(new TraceSimulator(Config.from(properties)).replay(Path.of(trace)).format());
+    }
+
+    /**
+     * Replay a trace file: a first pass reads the recorded call latencies, a second one replays the requests
+     */
+    public Report replay(Path trace) throws IOException {
+        Latencies latencies = new Latencies();
+        TraceReader.read(trace, event -> {
+            if (event instanceof TraceEvent.Downstream downstream) {
+                latencies.add(downstream);
+            }
+        });
+        Replay replay = new Replay(latencies);
+        TraceReader.read(trace, replay::accept);
+        return replay.report();
+    }
+
+    /**
+     * Recorded call latencies by path and route, handed out in recording order to keep their variability
+     */
+    private final class Latencies {
+        private final Map<String, List<Long>> byPath = new HashMap<>();
+        private final Map<String, List<Long>> byRoute = new HashMap<>();
+        private final Map<String, Integer> cursors = new HashMap<>();
+        private final List<Long> all = new ArrayList<>();
+        private final Random random = new Random(42);
+        private long calls;
+        private long firstMillis = Long.MAX_VALUE;
+        private long lastMillis = Long.MIN_VALUE;
+
+        private void add(TraceEvent.Downstream call) {
+            long nanos = call.latencyMicros() * 1000;
+            byPath.computeIfAbsent(call.path(), path -> new ArrayList<>()).add(nanos);
+            byRoute.computeIfAbsent(call.route(), route -> new ArrayList<>()).add(nanos);
+            all.add(nanos);
+            calls++;
+            firstMillis = Math.min(firstMillis, call.timeMillis());
+            lastMillis = Math.max(lastMillis, call.timeMillis());
+        }
+
+        private long next(String path, String route) {
+            List<Long> recorded = byPath.get(path);
+            if (recorded != null) {
+                int cursor = cursors.merge(path, 1, Integer::sum) - 1;
+                return recorded.get(cursor % recorded.size());
+            }
+            recorded = byRoute.getOrDefault(route, all);
+            return recorded.isEmpty() ? config.defaultLatency().toNanos() : recorded.get(random.nextInt(recorded.size()));
+        }
+    }
+
+    /**
+     * State of one replay: caches on a simulated clock, the connection pool and the collected figures
+     */
+    private final class Replay {
+        private final Latencies latencies;
+        private long now;
+        private final Map<String, Cache<String, Long>> caches = new LinkedHashMap<>();
+        private final PriorityQueue<Long> connections = new PriorityQueue<>();
+        private final List<Long> predicted = new ArrayList<>();
+        private final List<Long> observed = new ArrayList<>();
+        private int sampling = 1;
+        private long firstMillis = Long.MIN_VALUE;
+        private long lastMillis;
+        private long requests;
+        private long cachedRequests;
+        private long observedCachedRequests;
+        private long calls;
+        private long responseTimeouts;
+        private long acquisitionTimeouts;
+
+        private Replay(Latencies latencies) {
+            this.latencies = latencies;
+        }
+
+        private void accept(TraceEvent event) {
+            switch (event) {
+                case TraceEvent.Session session -> {
+                    if (caches.isEmpty()) {
+                        start(session.sampling());
+                    }
+                }
+                case TraceEvent.Request request -> request(request);
+                case TraceEvent.Downstream downstream -> {
+                }
+            }
+        }
+
+        private void start(int sampling) {
+            this.sampling = sampling;
+            config.caches().forEach((name, policy) -> {
+                long maximumSize = name.equals(PRODUCT_DETAILS)
+                        ? policy.maximumSize()
+                        : Math.round((double) policy.maximumSize() / sampling);
+                Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                        .maximumSize(maximumSize)
+                        .expireAfterWrite(policy.expiration())
+                        .ticker(() -> now)
+                        .executor(Runnable::run)
+                        .recordStats();
+                if (!policy.idleExpiration().isZero()) {
+                    builder.expireAfterAccess(policy.idleExpiration());
+                }
+                caches.put(name, builder.build());
+            });
+            for (long i = Math.max(1, Math.round((double) config.maxConnections() / sampling)); i > 0; i--) {
+                connections.add(0L);
+            }
+        }
+
+        private void request(TraceEvent.Request request) {
+            if (caches.isEmpty()) {
+                start(1);
+            }
+            if (firstMillis == Long.MIN_VALUE) {
+                firstMillis = request.timeMillis();
+            }
+            lastMillis = Math.max(lastMillis, request.timeMillis());
+            long start = Math.max(now, (request.timeMillis() - firstMillis) * 1_000_000);
+            now = start;
+            long callsBefore = calls + acquisitionTimeouts;
+            long ready = load(SIMILAR_PRODUCTS, request.productId(), start, at -> {
+                long exists = detail(request.productId(), at);
+                long ids = load(SIMILAR_IDS, request.productId(), exists,
+                        from -> call(config.similarIdsPath(), request.productId(), from));
+                // Similar details with the configured parallelism, each lane taking the next ID when free
+                PriorityQueue<Long> lanes = new PriorityQueue<>();
+                for (int i = 0; i < Math.max(1, config.parallelism()); i++) {
+                    lanes.add(ids);
+                }
+                long done = ids;
+                for (String id : request.similarIds()) {
+                    long end = detail(id, lanes.poll());
+                    lanes.add(end);
+                    done = Math.max(done, end);
+                }
+                return done;
+            });
+            requests++;
+            if (calls + acquisitionTimeouts == callsBefore) {
+                cachedRequests++;
+            }
+            if (request.cached()) {
+                observedCachedRequests++;
+            }
+            predicted.add(Math.max(0, ready - start));
+            observed.add(request.latencyMicros() * 1000);
+        }
+
+        private long detail(String productId, long at) {
+            return load(PRODUCT_DETAILS, productId, at, from -> call(config.detailPath(), productId, from));
+        }
+
+        /**
+         * Look up a cache entry, loading it on a miss
+         * @param at Simulated time the value is needed from
+         * @param loader Simulated time the value is loaded at, from the time the load starts
+         * @return Simulated time the value is available at
+         */
+        private long load(String cache, String key, long at, LongFunction<Long> loader) {
+            Cache<String, Long> entries = caches.get(cache);
+            Long loaded = entries.getIfPresent(key);
+            if (loaded != null) {
+                return Math.max(at, loaded);
+            }
+            long ready = loader.apply(at);
+            entries.put(key, ready);
+            return ready;
+        }
+
+        /**
+         * Call the product API on the first free pool connection
+         * @return Simulated time the call ends at
+         */
+        private long call(String template, String productId, long at) {
+            long free = connections.poll();
+            long begin = Math.max(at, free);
+            if (begin - at > config.acquisitionTimeout().toNanos()) {
+                acquisitionTimeouts++;
+                connections.add(free);
+                return at + config.acquisitionTimeout().toNanos();
+            }
+            String path = template.replace("{productId}", productId);
+            long latency = latencies.next(path, template);
+            if (latency > config.responseTimeout().toNanos()) {
+                responseTimeouts++;
+                latency = config.responseTimeout().toNanos();
+            }
+            calls++;
+            connections.add(begin + latency);
+            return begin + latency;
+        }
+
+        private Report report() {
+            double seconds = Math.max(1, (lastMillis - firstMillis) / 1000.0);
+            double callSeconds = Math.max(1, (latencies.lastMillis - latencies.firstMillis) / 1000.0);
+            Map<String, Double> hitRatios = new LinkedHashMap<>();
+            caches.forEach((name, cache) -> hitRatios.put(name, cache.stats().hitRate()));
+            return new Report(requests, seconds, hitRatios,
+                    requests == 0 ? 0 : (double) cachedRequests / requests,
+                    requests == 0 ? 0 : (double) observedCachedRequests / requests,
+                    calls, calls * sampling / seconds,
+                    latencies.calls == 0 ? 0 : latencies.calls * sampling / callSeconds,
+                    percentiles(predicted), percentiles(observed), responseTimeouts, acquisitionTimeouts, sampling);
+        }
+    }
+
+    private static double[] percentiles(List<Long> nanos) {
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        double[] percentiles = new double[Report.PERCENTILES.length];
+        for (int i = 0; i < percentiles.length && sorted.length > 0; i++) {
+            int index = (int) Math.ceil(Report.PERCENTILES[i] * sorted.length) - 1;
+            percentiles[i] = sorted[Math.max(0, index)] / 1e6;
+        }
+        return percentiles;
+    }
+}
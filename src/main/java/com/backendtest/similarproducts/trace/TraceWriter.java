@@ -0,0 +1,147 @@
+package com.backendtest.similarproducts.trace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes trace events in the compact binary trace format. A trace starts with the {@link #MAGIC} bytes and
+ * a version, followed by tagged records. Times are varint deltas from the previous event, and strings are
+ * written once per session and referenced by index afterwards. A new session starts when the string
+ * dictionary is full, bounding the memory of both the writer and the reader.
+ */
+class TraceWriter {
+
+    static final byte[] MAGIC = {'S', 'P', 'T', 'R'};
+    static final int VERSION = 1;
+    static final int SESSION = 1;
+    static final int STRING = 2;
+    static final int REQUEST = 3;
+    static final int DOWNSTREAM = 4;
+    static final int CACHED = 1;
+
+    private final OutputStream out;
+    private final int maxStrings;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private int sampling = 1;
+    private long lastMillis;
+    private long bytes;
+
+    /**
+     * @param out Stream to append the records to
+     * @param header Whether the stream is empty and needs the trace header
+     * @param maxStrings Strings referenced by a session before starting a new one
+     */
+    TraceWriter(OutputStream out, boolean header, int maxStrings) throws IOException {
+        this.out = out;
+        this.maxStrings = maxStrings;
+        if (header) {
+            out.write(MAGIC);
+            writeByte(VERSION);
+            bytes += MAGIC.length;
+        }
+    }
+
+    void write(TraceEvent event) throws IOException {
+        switch (event) {
+            case TraceEvent.Session session -> {
+                strings.clear();
+                sampling = session.sampling();
+                lastMillis = session.timeMillis();
+                writeByte(SESSION);
+                writeVarLong(session.timeMillis());
+                writeVarLong(session.sampling());
+            }
+            case TraceEvent.Request request -> {
+                List<String> values = new ArrayList<>(request.similarIds().size() + 1);
+                values.add(request.productId());
+                values.addAll(request.similarIds());
+                reserve(values, request.timeMillis());
+                int product = reference(request.productId());
+                int[] similar = new int[request.similarIds().size()];
+                for (int i = 0; i < similar.length; i++) {
+                    similar[i] = reference(request.similarIds().get(i));
+                }
+                writeByte(REQUEST);
+                writeDelta(request.timeMillis());
+                writeVarLong(product);
+                writeByte(request.cached() ? CACHED : 0);
+                writeVarLong(request.latencyMicros());
+                writeVarLong(similar.length);
+                for (int reference : similar) {
+                    writeVarLong(reference);
+                }
+            }
+            case TraceEvent.Downstream downstream -> {
+                reserve(List.of(downstream.route(), downstream.path()), downstream.timeMillis());
+                int route = reference(downstream.route());
+                int path = reference(downstream.path());
+                writeByte(DOWNSTREAM);
+                writeDelta(downstream.timeMillis());
+                writeVarLong(route);
+                writeVarLong(path);
+                writeVarLong(downstream.status());
+                writeVarLong(downstream.latencyMicros());
+            }
+        }
+    }
+
+    /**
+     * Bytes written since the writer was created
+     */
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Start a new session if the strings of an event do not fit in the dictionary, so that
+     * all the references of the event belong to the same session
+     */
+    private void reserve(List<String> values, long timeMillis) throws IOException {
+        long missing = values.stream().distinct().filter(value -> !strings.containsKey(value)).count();
+        if (missing > 0 && strings.size() + missing > maxStrings) {
+            write(new TraceEvent.Session(timeMillis, sampling));
+        }
+    }
+
+    /**
+     * Index of a string in the session dictionary, writing its definition on first use
+     */
+    private int reference(String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index != null) {
+            return index;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeByte(STRING);
+        writeVarLong(utf8.length);
+        out.write(utf8);
+        bytes += utf8.length;
+        strings.put(value, strings.size());
+        return strings.size() - 1;
+    }
+
+    private void writeDelta(long timeMillis) throws IOException {
+        long delta = timeMillis - lastMillis;
+        lastMillis = timeMillis;
+        // Zigzag, events are queued by concurrent threads and may be slightly out of order
+        writeVarLong((delta << 1) ^ (delta >> 63));
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeByte(int value) throws IOException {
+        out.write(value);
+        bytes++;
+    }
+}
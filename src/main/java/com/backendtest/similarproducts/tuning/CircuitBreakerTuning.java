@@ -0,0 +1,48 @@
+package com.backendtest.similarproducts.tuning;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.UnaryOperator;
+
+/**
+ * Makes the thresholds of the product API circuit breaker tunable. A change replaces the breaker in the
+ * registry, which the resilience aspects look up on every call; the new breaker starts closed with empty metrics.
+ */
+@Component
+public class CircuitBreakerTuning {
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final String circuitBreakerName;
+
+    public CircuitBreakerTuning(
+            PerformanceSettings settings,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            @Value("${circuit-breaker.name.product-api:productApi}") String circuitBreakerName) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.circuitBreakerName = circuitBreakerName;
+
+        CircuitBreakerConfig config = circuitBreakerRegistry.circuitBreaker(circuitBreakerName).getCircuitBreakerConfig();
+        String prefix = "resilience4j.circuitbreaker.instances." + circuitBreakerName + ".";
+        settings.register(prefix + "failure-rate-threshold", (int) config.getFailureRateThreshold(), 1, 100);
+        settings.onChange(prefix + "failure-rate-threshold", threshold ->
+                replace(builder -> builder.failureRateThreshold(threshold)));
+        settings.register(prefix + "wait-duration-in-open-state",
+                config.getWaitIntervalFunctionInOpenState().apply(1).intValue(), 1, 600000);
+        settings.onChange(prefix + "wait-duration-in-open-state", wait ->
+                replace(builder -> builder.waitDurationInOpenState(Duration.ofMillis(wait))));
+        settings.register(prefix + "sliding-window-size", config.getSlidingWindowSize(), 1, 10000);
+        settings.onChange(prefix + "sliding-window-size", size ->
+                replace(builder -> builder.slidingWindowSize(size)));
+    }
+
+    private void replace(UnaryOperator<CircuitBreakerConfig.Builder> change) {
+        CircuitBreaker current = circuitBreakerRegistry.circuitBreaker(circuitBreakerName);
+        CircuitBreakerConfig config = change.apply(CircuitBreakerConfig.from(current.getCircuitBreakerConfig())).build();
+        circuitBreakerRegistry.replace(circuitBreakerName, CircuitBreaker.of(circuitBreakerName, config, current.getTags()));
+    }
+}
@@ -0,0 +1,187 @@
+package com.backendtest.similarproducts.tuning;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * Performance settings that can be changed at runtime, named after the properties they are initialized from.
+ * Request paths read the current value on every use; components holding derived state (caches, connection
+ * pool, circuit breaker) register a listener that applies each change. Every change is validated against
+ * the range of the setting and recorded in a bounded history.
+ */
+@Slf4j
+@Component
+public class PerformanceSettings {
+
+    public static final String MAX_CONNECTIONS = "webclient.max-connections";
+    public static final String ACQUISITION_TIMEOUT = "webclient.acquisition-timeout";
+    public static final String RESPONSE_TIMEOUT = "webclient.response-timeout";
+    public static final String TIMEOUT_MULTIPLIER = "webclient.timeout-multiplier";
+    public static final String PARALLEL_RAILS = "service.parallel-rails";
+
+    @Value("${log.message.tuning-change}")
+    private String logTuningChange;
+
+    /**
+     * Current value of a setting with its accepted range
+     */
+    public record Range(int value, int min, int max) {
+    }
+
+    /**
+     * Change applied to a setting
+     */
+    public record Change(Instant at, String setting, int oldValue, int newValue) {
+    }
+
+    private final Map<String, Setting> settings = new ConcurrentHashMap<>();
+    private final Deque<Change> history = new ArrayDeque<>();
+    private final int historySize;
+    private final Setting responseTimeout;
+    private final Setting timeoutMultiplier;
+    private final Setting parallelRails;
+
+    public PerformanceSettings(
+            @Value("${webclient.max-connections:1000}") int maxConnections,
+            @Value("${webclient.acquisition-timeout:1500}") int acquisitionTimeout,
+            @Value("${webclient.response-timeout:1500}") int responseTimeout,
+            @Value("${webclient.timeout-multiplier:2}") int timeoutMultiplier,
+            @Value("${service.parallel-rails:4}") int parallelRails,
+            @Value("${tuning.history-size:100}") int historySize) {
+        this.historySize = historySize;
+        register(MAX_CONNECTIONS, maxConnections, 1, 10000);
+        register(ACQUISITION_TIMEOUT, acquisitionTimeout, 1, 60000);
+        this.responseTimeout = register(RESPONSE_TIMEOUT, responseTimeout, 1, 60000);
+        this.timeoutMultiplier = register(TIMEOUT_MULTIPLIER, timeoutMultiplier, 1, 10);
+        this.parallelRails = register(PARALLEL_RAILS, parallelRails, 1, 64);
+    }
+
+    /**
+     * Make a setting tunable
+     * @param name Setting name
+     * @param initial Initial value
+     * @param min Minimum accepted value
+     * @param max Maximum accepted value
+     */
+    public Setting register(String name, int initial, int min, int max) {
+        Setting setting = new Setting(initial, min, max);
+        settings.put(name, setting);
+        return setting;
+    }
+
+    /**
+     * Apply every future change of a setting
+     * @param name Setting name
+     * @param listener Called with the new value, before the change is acknowledged
+     */
+    public void onChange(String name, IntConsumer listener) {
+        setting(name).listeners.add(listener);
+    }
+
+    public int get(String name) {
+        return setting(name).value;
+    }
+
+    public Duration getResponseTimeout() {
+        return Duration.ofMillis(responseTimeout.value);
+    }
+
+    public int getTimeoutMultiplier() {
+        return timeoutMultiplier.value;
+    }
+
+    /**
+     * Concurrency of the product detail calls of a request, {@code service.parallel-rails} per available processor
+     */
+    public int getParallelism() {
+        return parallelRails.value * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Change a setting and apply it. If a listener fails, the previous value is restored.
+     * @param name Setting name
+     * @param value New value
+     * @return Applied change
+     * @throws IllegalArgumentException if the setting is unknown or the value out of its range
+     */
+    public synchronized Change update(String name, int value) {
+        Setting setting = setting(name);
+        if (value < setting.min || value > setting.max) {
+            throw new IllegalArgumentException(
+                    name + " must be between " + setting.min + " and " + setting.max + ", got " + value);
+        }
+        int oldValue = setting.value;
+        setting.value = value;
+        try {
+            setting.listeners.forEach(listener -> listener.accept(value));
+        } catch (RuntimeException e) {
+            setting.value = oldValue;
+            setting.listeners.forEach(listener -> listener.accept(oldValue));
+            throw e;
+        }
+        Change change = new Change(Instant.now(), name, oldValue, value);
+        if (history.size() == historySize) {
+            history.removeFirst();
+        }
+        history.addLast(change);
+        log.info(logTuningChange, name, oldValue, value);
+        return change;
+    }
+
+    /**
+     * Current value and range of every setting, by name
+     */
+    public Map<String, Range> current() {
+        Map<String, Range> current = new TreeMap<>();
+        settings.forEach((name, setting) -> current.put(name, new Range(setting.value, setting.min, setting.max)));
+        return current;
+    }
+
+    /**
+     * Last changes, oldest first
+     */
+    public synchronized List<Change> history() {
+        return new ArrayList<>(history);
+    }
+
+    private Setting setting(String name) {
+        Setting setting = settings.get(name);
+        if (setting == null) {
+            throw new IllegalArgumentException("Unknown setting: " + name);
+        }
+        return setting;
+    }
+
+    /**
+     * Tunable value with its range and listeners
+     */
+    public static final class Setting {
+        private final int min;
+        private final int max;
+        private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+        private volatile int value;
+
+        private Setting(int value, int min, int max) {
+            this.value = value;
+            this.min = min;
+            this.max = max;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.backendtest.similarproducts.tuning;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpResponse;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Connector delegating to a Reactor Netty connector that can be rebuilt at runtime, so that a new
+ * connection pool size, acquire timeout or response timeout applies to new requests. Requests in flight
+ * finish on the previous connection pool, which is disposed after a grace period.
+ */
+public class TunableClientHttpConnector implements ClientHttpConnector {
+
+    private final Supplier<ConnectionProvider> providerFactory;
+    private final Function<ConnectionProvider, ReactorClientHttpConnector> connectorFactory;
+    private final AtomicReference<Pooled> current = new AtomicReference<>();
+
+    private record Pooled(ConnectionProvider provider, ReactorClientHttpConnector connector) {
+    }
+
+    /**
+     * @param providerFactory Builds a connection pool from the current settings
+     * @param connectorFactory Builds a connector over a connection pool from the current settings
+     */
+    public TunableClientHttpConnector(Supplier<ConnectionProvider> providerFactory,
+                                      Function<ConnectionProvider, ReactorClientHttpConnector> connectorFactory) {
+        this.providerFactory = providerFactory;
+        this.connectorFactory = connectorFactory;
+        current.set(build());
+    }
+
+    @Override
+    public Mono<ClientHttpResponse> connect(HttpMethod method, URI uri,
+                                            Function<? super ClientHttpRequest, Mono<Void>> requestCallback) {
+        return current.get().connector().connect(method, uri, requestCallback);
+    }
+
+    /**
+     * Replace the connector and its connection pool
+     * @param gracePeriod Time left to the requests in flight before the previous pool is closed
+     */
+    public void rebuild(Duration gracePeriod) {
+        Pooled previous = current.getAndSet(build());
+        Mono.delay(gracePeriod)
+                .then(previous.provider().disposeLater())
+                .subscribe();
+    }
+
+    private Pooled build() {
+        ConnectionProvider provider = providerFactory.get();
+        return new Pooled(provider, connectorFactory.apply(provider));
+    }
+}
@@ -0,0 +1,219 @@
+package com.backendtest.similarproducts.warmup;
+
+import com.backendtest.similarproducts.cache.CacheMissRatioCurves;
+import com.backendtest.similarproducts.cache.TwoLevelCacheManager;
+import com.backendtest.similarproducts.client.DownstreamTimingFilter;
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warm-up phase run before the application reports readiness: Spring Boot only publishes
+ * {@code ReadinessState.ACCEPTING_TRAFFIC} once the application runners have completed.
+ * Pre-opens the outbound connection pool, then calls the similar products endpoint in rounds,
+ * going through the controller, service, cache and JSON serialization, until the p99 of a round
+ * stabilizes, so that the hot paths are JIT-compiled before real traffic arrives. Every round starts
+ * from empty caches, so that it measures the full path rather than a cache lookup.
+ * Its own calls skip the downstream timing, slow call log and trace: the pool is pre-opened through the shared
+ * connector and balancer only, and the endpoint is called through a separate loopback client. Disabled by
+ * default, since the endpoint calls reach the product API: {@code warmup.product-ids} must be products it
+ * serves without side effects, such as those of the stand-in.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "warmup.enabled", havingValue = "true")
+public class WarmupRunner implements ApplicationRunner {
+
+    private final WebClient upstreamClient;
+    private final WebClient loopbackClient;
+    private final CacheManager cacheManager;
+    private final HotKeyTracker hotKeyTracker;
+    private final CacheMissRatioCurves missRatioCurves;
+    private final Environment environment;
+    private final String similarIdsUrl;
+    private final List<String> productIds;
+    private final int connections;
+    private final int concurrency;
+    private final int roundRequests;
+    private final int maxRounds;
+    private final double steadyTolerance;
+    private final Duration maxDuration;
+
+    private final AtomicLong warmupMillis = new AtomicLong();
+    private final AtomicLong firstRequestMillis = new AtomicLong();
+    private final AtomicLong steadyStateMillis = new AtomicLong();
+    private final AtomicLong steadyStateP99Micros = new AtomicLong();
+
+    @Value("${log.message.warmup-completed}")
+    private String logWarmupCompleted;
+
+    @Value("${log.message.warn-warmup-failed}")
+    private String logWarnWarmupFailed;
+
+    @Value("${log.message.warn-warmup-not-steady}")
+    private String logWarnWarmupNotSteady;
+
+    public WarmupRunner(
+            WebClient webClient,
+            CacheManager cacheManager,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            HotKeyTracker hotKeyTracker,
+            CacheMissRatioCurves missRatioCurves,
+            @Value("${api.product.similarids.url}") String similarIdsUrl,
+            @Value("${warmup.product-ids:1}") String[] productIds,
+            @Value("${warmup.connections:32}") int connections,
+            @Value("${warmup.concurrency:16}") int concurrency,
+            @Value("${warmup.round-requests:500}") int roundRequests,
+            @Value("${warmup.max-rounds:40}") int maxRounds,
+            @Value("${warmup.steady-tolerance:0.2}") double steadyTolerance,
+            @Value("${warmup.max-duration:30000}") int maxDuration) {
+        this.upstreamClient = webClient.mutate()
+                .filters(filters -> filters.removeIf(DownstreamTimingFilter.class::isInstance))
+                .build();
+        this.loopbackClient = WebClient.create();
+        this.cacheManager = cacheManager;
+        this.hotKeyTracker = hotKeyTracker;
+        this.missRatioCurves = missRatioCurves;
+        this.environment = environment;
+        this.similarIdsUrl = similarIdsUrl;
+        this.productIds = Arrays.asList(productIds);
+        this.connections = connections;
+        this.concurrency = concurrency;
+        this.roundRequests = roundRequests;
+        this.maxRounds = maxRounds;
+        this.steadyTolerance = steadyTolerance;
+        this.maxDuration = Duration.ofMillis(maxDuration);
+
+        TimeGauge.builder("application.warmup.time", warmupMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Duration of the warm-up phase run before readiness")
+                .register(meterRegistry);
+        TimeGauge.builder("application.warmup.first-request.time", firstRequestMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("JVM uptime when the first warm-up call to the endpoint completed")
+                .register(meterRegistry);
+        TimeGauge.builder("application.steady-state.time", steadyStateMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("JVM uptime when the p99 latency of the warm-up rounds stabilized")
+                .register(meterRegistry);
+        TimeGauge.builder("application.steady-state.p99", steadyStateP99Micros, TimeUnit.MICROSECONDS, AtomicLong::get)
+                .description("p99 latency of the warm-up round that reached the steady state")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        // Clearing the caches afterwards only reaches this replica, so keep the warm-up results out of L2
+        setSharedWrites(false);
+        try {
+            preOpenConnections();
+            int rounds = exerciseEndpoint(start);
+            warmupMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            log.info(logWarmupCompleted, warmupMillis.get(), firstRequestMillis.get(), steadyStateMillis.get(),
+                    steadyStateP99Micros.get() / 1000.0, rounds);
+        } catch (RuntimeException e) {
+            log.warn(logWarnWarmupFailed, e.getMessage());
+        } finally {
+            // Warm-up results, including failures of an unreachable product API, must not be served later
+            clearCaches();
+            setSharedWrites(true);
+            hotKeyTracker.clear();
+            missRatioCurves.clear();
+        }
+    }
+
+    private void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    private void setSharedWrites(boolean sharedWrites) {
+        if (cacheManager instanceof TwoLevelCacheManager twoLevelCacheManager) {
+            twoLevelCacheManager.setSharedWrites(sharedWrites);
+        }
+    }
+
+    /**
+     * Open {@code warmup.connections} connections to the product API at once, errors included:
+     * the point is the TCP handshakes and the pool, not the responses
+     */
+    private void preOpenConnections() {
+        Flux.range(0, connections)
+                .flatMap(i -> upstreamClient.get()
+                        .uri(similarIdsUrl, productIds.get(i % productIds.size()))
+                        .retrieve()
+                        .toBodilessEntity()
+                        .onErrorResume(e -> Mono.empty()), connections)
+                .blockLast(maxDuration);
+    }
+
+    /**
+     * Call the similar products endpoint in rounds until two consecutive rounds have a p99 within
+     * {@code warmup.steady-tolerance} of each other. The steady state gauges are only set if it does.
+     * @return Number of rounds run
+     */
+    private int exerciseEndpoint(long start) {
+        String endpoint = "http://localhost:" + environment.getProperty("local.server.port") + "/product/{productId}/similar";
+        long deadline = start + maxDuration.toNanos();
+        long previousP99 = Long.MAX_VALUE;
+        int round = 0;
+        while (round < maxRounds && System.nanoTime() < deadline) {
+            round++;
+            // The fast path and the service would otherwise answer every round after the first from the caches
+            clearCaches();
+            long[] latencies = Flux.range(0, roundRequests)
+                    .flatMap(i -> timedRequest(endpoint, productIds.get(i % productIds.size())), concurrency)
+                    .collectList()
+                    .map(list -> list.stream().mapToLong(Long::longValue).sorted().toArray())
+                    .block(maxDuration);
+            if (latencies == null || latencies.length == 0) {
+                break;
+            }
+            long p99 = latencies[(int) Math.ceil(0.99 * latencies.length) - 1];
+            if (Math.abs(p99 - previousP99) <= previousP99 * steadyTolerance) {
+                steadyStateP99Micros.set(TimeUnit.NANOSECONDS.toMicros(p99));
+                steadyStateMillis.set(uptimeMillis());
+                return round;
+            }
+            previousP99 = p99;
+        }
+        log.warn(logWarnWarmupNotSteady, round,
+                previousP99 == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMicros(previousP99) / 1000.0);
+        return round;
+    }
+
+    private Mono<Long> timedRequest(String endpoint, String productId) {
+        return Mono.defer(() -> {
+            long sent = System.nanoTime();
+            return loopbackClient.get()
+                    .uri(endpoint, productId)
+                    .retrieve()
+                    .toBodilessEntity()
+                    .map(response -> {
+                        firstRequestMillis.compareAndSet(0, uptimeMillis());
+                        return System.nanoTime() - sent;
+                    })
+                    .onErrorResume(e -> Mono.empty());
+        });
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
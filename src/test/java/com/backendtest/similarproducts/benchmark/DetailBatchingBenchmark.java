@@ -0,0 +1,88 @@
+package com.backendtest.similarproducts.benchmark;
+
+import com.backendtest.similarproducts.SimilarProductsApplication;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares single and micro-batched product detail fetching with the detail cache disabled, so every
+ * similar products request reaches the product API. Reports throughput, latency and the number of
+ * requests the product API received. Run with {@code mvn test -Pbenchmarks}; tune with
+ * {@code -Dbenchmark.vus}, {@code -Dbenchmark.seconds} and {@code -Dbenchmark.warmup-seconds}.
+ */
+class DetailBatchingBenchmark {
+
+    private final int virtualUsers = Integer.getInteger("benchmark.vus", 200);
+    private final Duration duration = Duration.ofSeconds(Integer.getInteger("benchmark.seconds", 10));
+    private final Duration warmup = Duration.ofSeconds(Integer.getInteger("benchmark.warmup-seconds", 5));
+
+    private final AtomicLong downstreamRequests = new AtomicLong();
+    private MockWebServer productApi;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SimuladoDispatcher simulado = new SimuladoDispatcher();
+        productApi = new MockWebServer();
+        productApi.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                downstreamRequests.incrementAndGet();
+                return simulado.dispatch(request);
+            }
+        });
+        productApi.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        productApi.shutdown();
+    }
+
+    @Test
+    void compareSingleAndBatchedFetching() throws Exception {
+        Map<String, String> results = new LinkedHashMap<>();
+        results.put("single", run(false));
+        results.put("batched", run(true));
+
+        System.out.printf("%nDetail batching benchmark (%d VUs, %ds per mode)%n", virtualUsers, duration.toSeconds());
+        results.forEach((mode, result) -> System.out.printf("%-8s %s%n", mode, result));
+    }
+
+    private String run(boolean batched) throws Exception {
+        String baseUrl = "http://localhost:" + productApi.getPort();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SimilarProductsApplication.class)
+                .run("--server.port=0",
+                        "--logging.level.root=OFF",
+                        "--warmup.enabled=false",
+                        "--cache.product-details.maximum-size=0",
+                        "--cache.similar-products.maximum-size=0",
+                        "--api.product.batch.enabled=" + batched,
+                        "--api.product.similarids.url=" + baseUrl + "/product/{productId}/similarids",
+                        "--api.product.detail.url=" + baseUrl + "/product/{productId}",
+                        "--api.product.batch.url=" + baseUrl + "/product?ids={ids}")) {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            URI uri = URI.create("http://localhost:" + port + "/product/1/similar");
+            LoadGenerator loadGenerator = new LoadGenerator();
+            loadGenerator.run(uri, virtualUsers, warmup);
+            long before = downstreamRequests.get();
+            LoadGenerator.Result result = loadGenerator.run(uri, virtualUsers, duration);
+            long downstream = downstreamRequests.get() - before;
+            return String.format("%s downstream=%d (%.2f per request)",
+                    result, downstream, (double) downstream / Math.max(1, result.requests()));
+        }
+    }
+}
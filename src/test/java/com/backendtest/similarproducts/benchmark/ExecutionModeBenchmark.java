@@ -0,0 +1,86 @@
+package com.backendtest.similarproducts.benchmark;
+
+import com.backendtest.similarproducts.SimilarProductsApplication;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Head-to-head comparison of the reactive and virtual-thread execution modes over the k6 scenarios.
+ * Run with {@code mvn test -Pbenchmarks}; tune with {@code -Dbenchmark.vus}, {@code -Dbenchmark.seconds}
+ * and {@code -Dbenchmark.warmup-seconds}. Every scenario is warmed up before it is measured.
+ */
+class ExecutionModeBenchmark {
+
+    private static final Map<String, String> SCENARIOS = new LinkedHashMap<>();
+
+    static {
+        SCENARIOS.put("normal", "1");
+        SCENARIOS.put("notFound", "4");
+        SCENARIOS.put("error", "5");
+        SCENARIOS.put("slow", "2");
+        SCENARIOS.put("verySlow", "3");
+    }
+
+    private final int virtualUsers = Integer.getInteger("benchmark.vus", 200);
+    private final Duration duration = Duration.ofSeconds(Integer.getInteger("benchmark.seconds", 10));
+    private final Duration warmup = Duration.ofSeconds(Integer.getInteger("benchmark.warmup-seconds", 5));
+
+    private MockWebServer productApi;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        productApi = new MockWebServer();
+        productApi.setDispatcher(new SimuladoDispatcher());
+        productApi.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            productApi.shutdown();
+        } catch (IOException e) {
+            // verySlow responses are still delayed on the mock server; nothing left to measure
+        }
+    }
+
+    @Test
+    void compareExecutionModes() throws Exception {
+        Map<String, Map<String, LoadGenerator.Result>> results = new LinkedHashMap<>();
+        results.put("reactive", runScenarios());
+        results.put("virtual-threads", runScenarios("virtual-threads"));
+
+        System.out.printf("%nExecution mode benchmark (%d VUs, %ds per scenario)%n", virtualUsers, duration.toSeconds());
+        results.forEach((mode, scenarios) -> scenarios.forEach((scenario, result) ->
+                System.out.printf("%-16s %-9s %s%n", mode, scenario, result)));
+    }
+
+    private Map<String, LoadGenerator.Result> runScenarios(String... profiles) throws Exception {
+        String baseUrl = "http://localhost:" + productApi.getPort();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SimilarProductsApplication.class)
+                .profiles(profiles)
+                .run("--server.port=0",
+                        "--logging.level.root=OFF",
+                        "--api.product.similarids.url=" + baseUrl + "/product/{productId}/similarids",
+                        "--api.product.detail.url=" + baseUrl + "/product/{productId}")) {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            LoadGenerator loadGenerator = new LoadGenerator();
+            Map<String, LoadGenerator.Result> results = new LinkedHashMap<>();
+            for (Map.Entry<String, String> scenario : SCENARIOS.entrySet()) {
+                URI uri = URI.create("http://localhost:" + port + "/product/" + scenario.getValue() + "/similar");
+                loadGenerator.run(uri, virtualUsers, warmup);
+                results.put(scenario.getKey(), loadGenerator.run(uri, virtualUsers, duration));
+            }
+            return results;
+        }
+    }
+}
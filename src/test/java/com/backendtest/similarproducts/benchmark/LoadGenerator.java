@@ -0,0 +1,92 @@
+package com.backendtest.similarproducts.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop load generator: every virtual user sends requests back to back for a fixed duration
+ */
+public class LoadGenerator {
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    /**
+     * Run a closed-loop load against a single URI
+     * @param uri Target URI
+     * @param virtualUsers Number of concurrent users
+     * @param duration How long to keep sending requests
+     * @return Aggregated latencies
+     */
+    public Result run(URI uri, int virtualUsers, Duration duration) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+        long end = System.nanoTime() + duration.toNanos();
+        long start = System.nanoTime();
+
+        List<Future<List<Long>>> users = new ArrayList<>(virtualUsers);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < virtualUsers; i++) {
+                users.add(executor.submit(() -> {
+                    List<Long> latencies = new ArrayList<>();
+                    while (System.nanoTime() < end) {
+                        long sent = System.nanoTime();
+                        httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies.add(System.nanoTime() - sent);
+                    }
+                    return latencies;
+                }));
+            }
+            List<Long> all = new ArrayList<>();
+            for (Future<List<Long>> user : users) {
+                all.addAll(user.get());
+            }
+            return new Result(all, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Latencies of a load run, in nanoseconds
+     */
+    public static class Result {
+        private final List<Long> latencies;
+        private final long elapsedNanos;
+
+        Result(List<Long> latencies, long elapsedNanos) {
+            this.latencies = new ArrayList<>(latencies);
+            this.elapsedNanos = elapsedNanos;
+            Collections.sort(this.latencies);
+        }
+
+        public int requests() {
+            return latencies.size();
+        }
+
+        public double throughput() {
+            return latencies.size() / (elapsedNanos / 1e9);
+        }
+
+        public double percentileMillis(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.size()) - 1;
+            return latencies.get(Math.max(0, index)) / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d rps=%.1f p50=%.2fms p95=%.2fms p99=%.2fms",
+                    requests(), throughput(), percentileMillis(50), percentileMillis(95), percentileMillis(99));
+        }
+    }
+}
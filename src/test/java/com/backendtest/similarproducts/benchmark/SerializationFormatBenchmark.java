@@ -0,0 +1,91 @@
+package com.backendtest.similarproducts.benchmark;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Payload size and single-thread encode/decode throughput of the response encodings for similar products
+ * lists of several lengths. Run with {@code mvn test -Pbenchmarks}; tune with {@code -Dbenchmark.seconds}
+ * and {@code -Dbenchmark.warmup-seconds}, both per format and list length.
+ */
+class SerializationFormatBenchmark {
+
+    private static final Map<String, ObjectMapper> FORMATS = new LinkedHashMap<>();
+    private static final TypeReference<List<ProductDetail>> LIST = new TypeReference<>() {};
+
+    static {
+        FORMATS.put("json", new ObjectMapper());
+        FORMATS.put("smile", new ObjectMapper(new SmileFactory()));
+        FORMATS.put("cbor", new ObjectMapper(new CBORFactory()));
+    }
+
+    private final Duration duration = Duration.ofSeconds(Integer.getInteger("benchmark.seconds", 2));
+    private final Duration warmup = Duration.ofSeconds(Integer.getInteger("benchmark.warmup-seconds", 1));
+
+    /**
+     * Sink for the encoded sizes, so that the JIT cannot drop the measured work
+     */
+    private long consumed;
+
+    @Test
+    void compareFormats() throws Exception {
+        System.out.printf("%nSerialization format benchmark (%ds per format and length)%n", duration.toSeconds());
+        System.out.printf("%-6s %-7s %8s %14s %14s%n", "format", "length", "bytes", "encode ops/s", "decode ops/s");
+        for (int length : new int[] {5, 50}) {
+            List<ProductDetail> products = products(length);
+            for (Map.Entry<String, ObjectMapper> format : FORMATS.entrySet()) {
+                ObjectWriter writer = format.getValue().writerFor(LIST);
+                ObjectReader reader = format.getValue().readerFor(LIST);
+                byte[] payload = writer.writeValueAsBytes(products);
+                assertEquals(products, reader.readValue(payload));
+
+                throughput(() -> consumed += writer.writeValueAsBytes(products).length, warmup);
+                double encode = throughput(() -> consumed += writer.writeValueAsBytes(products).length, duration);
+                throughput(() -> consumed += reader.<List<?>>readValue(payload).size(), warmup);
+                double decode = throughput(() -> consumed += reader.<List<?>>readValue(payload).size(), duration);
+                System.out.printf("%-6s %-7d %8d %14.0f %14.0f%n", format.getKey(), length, payload.length, encode, decode);
+            }
+        }
+    }
+
+    private static double throughput(Operation operation, Duration duration) throws Exception {
+        long end = System.nanoTime() + duration.toNanos();
+        long start = System.nanoTime();
+        long operations = 0;
+        do {
+            for (int i = 0; i < 100; i++) {
+                operation.run();
+            }
+            operations += 100;
+        } while (System.nanoTime() < end);
+        return operations * 1e9 / (System.nanoTime() - start);
+    }
+
+    /**
+     * Product details shaped like the simulado ones
+     */
+    private static List<ProductDetail> products(int length) {
+        return IntStream.rangeClosed(1, length)
+                .mapToObj(i -> new ProductDetail(String.valueOf(i), "Product " + i, 9.99 + i, i % 3 != 0))
+                .toList();
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run() throws Exception;
+    }
+}
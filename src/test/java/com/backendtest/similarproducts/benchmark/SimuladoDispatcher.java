@@ -0,0 +1,67 @@
+package com.backendtest.similarproducts.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MockWebServer dispatcher replaying the simulado mocks used by the k6 scenarios. It also answers multi-ID
+ * detail requests ({@code /product?ids=1,2}) with the found details, delayed by the slowest of them.
+ */
+public class SimuladoDispatcher extends Dispatcher {
+
+    private static final Path MOCKS = Path.of("shared", "simulado", "mocks.json");
+
+    private final Map<String, JsonNode> mocks = new HashMap<>();
+
+    public SimuladoDispatcher() throws IOException {
+        for (JsonNode mock : new ObjectMapper().readTree(MOCKS.toFile())) {
+            mocks.put(mock.get("path").asText(), mock);
+        }
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        String batchIds = request.getRequestUrl().queryParameter("ids");
+        if ("/product".equals(request.getRequestUrl().encodedPath()) && batchIds != null) {
+            return dispatchBatch(batchIds.split(","));
+        }
+        JsonNode mock = mocks.get(request.getPath());
+        if (mock == null) {
+            return new MockResponse().setResponseCode(404);
+        }
+        MockResponse response = new MockResponse()
+                .setResponseCode(mock.path("status").asInt(200))
+                .setHeader("Content-Type", "application/json")
+                .setBody(mock.path("body").asText(""));
+        if (mock.has("delay")) {
+            response.setHeadersDelay(mock.get("delay").asLong(), TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    private MockResponse dispatchBatch(String[] productIds) {
+        StringJoiner body = new StringJoiner(",", "[", "]");
+        long delay = 0;
+        for (String productId : productIds) {
+            JsonNode mock = mocks.get("/product/" + productId);
+            if (mock != null && mock.path("status").asInt(200) == 200) {
+                body.add(mock.path("body").asText());
+                delay = Math.max(delay, mock.path("delay").asLong(0));
+            }
+        }
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(body.toString())
+                .setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,53 @@
+package com.backendtest.similarproducts.blocking;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.blockhound.integration.BlockHoundIntegration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * BlockHound integration, installed for the whole test suite, remembering every blocking call made on a
+ * non-blocking thread (Netty event loops, Reactor parallel schedulers). The call still throws, but the error
+ * may be swallowed by a fallback of the pipeline: registered as an auto-detected JUnit extension, the detector
+ * also fails the test during which the call happened.
+ */
+public class BlockingCallDetector implements BlockHoundIntegration, AfterEachCallback {
+
+    private static final ConcurrentLinkedQueue<BlockingOperationError> DETECTED = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void applyTo(BlockHound.Builder builder) {
+        builder.blockingMethodCallback(method -> {
+            BlockingOperationError error = new BlockingOperationError(method);
+            DETECTED.add(error);
+            throw error;
+        });
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        List<BlockingOperationError> detected = drain();
+        if (!detected.isEmpty()) {
+            AssertionError failure = new AssertionError(detected.size() + " blocking call(s) on a non-blocking thread, first: "
+                    + detected.get(0).getMessage(), detected.get(0));
+            detected.stream().skip(1).forEach(failure::addSuppressed);
+            throw failure;
+        }
+    }
+
+    /**
+     * Blocking calls detected since the last drain
+     */
+    static List<BlockingOperationError> drain() {
+        List<BlockingOperationError> detected = new ArrayList<>();
+        for (BlockingOperationError error = DETECTED.poll(); error != null; error = DETECTED.poll()) {
+            detected.add(error);
+        }
+        return detected;
+    }
+}
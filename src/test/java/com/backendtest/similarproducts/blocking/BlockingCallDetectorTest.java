@@ -0,0 +1,51 @@
+package com.backendtest.similarproducts.blocking;
+
+import org.junit.jupiter.api.Test;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockingCallDetectorTest {
+
+    @Test
+    void shouldDetectBlockingCallSwallowedByFallback() {
+        // When: a blocking call on a parallel scheduler thread, hidden by a fallback value
+        StepVerifier.create(Mono.fromCallable(() -> {
+                            Thread.sleep(1);
+                            return "slept";
+                        })
+                        .subscribeOn(Schedulers.parallel())
+                        .onErrorReturn("fallback"))
+                .expectNext("fallback")
+                .verifyComplete();
+
+        // Then
+        List<BlockingOperationError> detected = BlockingCallDetector.drain();
+        assertEquals(1, detected.size());
+        assertTrue(detected.get(0).getMessage().contains("java.lang.Thread.sleep"), detected.get(0).getMessage());
+    }
+
+    @Test
+    void shouldAllowBlockingCallOnBoundedElastic() {
+        StepVerifier.create(Mono.delay(Duration.ofMillis(1))
+                        .publishOn(Schedulers.boundedElastic())
+                        .map(tick -> {
+                            try {
+                                Thread.sleep(1);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return tick;
+                        }))
+                .expectNext(0L)
+                .verifyComplete();
+        assertTrue(BlockingCallDetector.drain().isEmpty());
+    }
+}
@@ -0,0 +1,54 @@
+package com.backendtest.similarproducts.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MissRatioCurveTest {
+
+    @Test
+    void shouldEstimateHitRatioOfRealCacheAtEverySize() {
+        // Given: a real cache holding half of a uniformly accessed key space
+        Cache<String, Boolean> cache = Caffeine.newBuilder().maximumSize(500).executor(Runnable::run).recordStats().build();
+        MissRatioCurve curve = new MissRatioCurve(new double[] {0.5, 1, 4}, 8, 500, Duration.ofMinutes(10), Duration.ZERO);
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 200000; i++) {
+            String key = String.valueOf(random.nextInt(1000));
+            curve.record(key);
+            cache.get(key, k -> Boolean.TRUE);
+        }
+
+        // Then
+        List<MissRatioCurve.Point> points = curve.points();
+        assertEquals(List.of(250L, 500L, 2000L), points.stream().map(MissRatioCurve.Point::maximumSize).toList());
+        assertEquals(cache.stats().hitRate(), points.get(1).hitRatio(), 0.05);
+        assertTrue(points.get(0).hitRatio() < points.get(1).hitRatio(), points.toString());
+        assertEquals(1.0, points.get(2).hitRatio(), 0.02);
+        assertEquals(200000, curve.accesses(), 30000);
+        assertTrue(curve.extraHitsPerThousandEntries() > 0);
+    }
+
+    @Test
+    void shouldRestartEstimateWhenCacheIsResized() {
+        // Given
+        MissRatioCurve curve = new MissRatioCurve(new double[] {1, 2}, 1, 10, Duration.ofMinutes(10), Duration.ZERO);
+        curve.record("1");
+        curve.record("1");
+
+        // When
+        curve.resize(20);
+
+        // Then
+        assertEquals(0, curve.accesses());
+        assertEquals(List.of(new MissRatioCurve.Point(1, 20, 0), new MissRatioCurve.Point(2, 40, 0)), curve.points());
+    }
+}
@@ -0,0 +1,214 @@
+package com.backendtest.similarproducts.cache;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TwoLevelCacheTest {
+
+    private final InMemoryL2Cache l2Cache = new InMemoryL2Cache();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private L2CacheCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        TypeFactory typeFactory = objectMapper.getTypeFactory();
+        JavaType productDetail = typeFactory.constructType(ProductDetail.class);
+        codec = new L2CacheCodec(objectMapper, Map.of(
+                "productDetails", productDetail,
+                "similarProducts", typeFactory.constructCollectionType(List.class, productDetail)));
+    }
+
+    private TwoLevelCache node(String cacheName) {
+        CaffeineCache local = new CaffeineCache(cacheName, Caffeine.newBuilder().buildAsync(), true);
+        return new TwoLevelCache(local, l2Cache, codec, "test:", Duration.ofMinutes(1), Duration.ofMillis(100), meterRegistry);
+    }
+
+    private double tierCount(String tier, String result) {
+        return meterRegistry.get("cache.tier.gets").tag("tier", tier).tag("result", result).counter().count();
+    }
+
+    @Test
+    void shouldServeOtherNodeFromSharedTier() {
+        // Given
+        TwoLevelCache nodeA = node("productDetails");
+        TwoLevelCache nodeB = node("productDetails");
+        ProductDetail product = new ProductDetail("2", "Product 2", 20.0, true);
+
+        // When
+        nodeA.put("2", product);
+        Object first = nodeB.retrieve("2").join();
+        Object second = nodeB.retrieve("2").join();
+
+        // Then
+        assertEquals(product, ((Cache.ValueWrapper) first).get());
+        assertEquals(product, ((Cache.ValueWrapper) second).get());
+        assertEquals(1, tierCount("l2", "hit"));
+        assertEquals(1, tierCount("local", "hit"));
+    }
+
+    @Test
+    void shouldCompleteWithNullWhenBothTiersMiss() {
+        // Given
+        TwoLevelCache cache = node("productDetails");
+
+        // When
+        CompletableFuture<?> result = cache.retrieve("404");
+
+        // Then
+        assertNotNull(result);
+        assertNull(result.join());
+        assertEquals(1, tierCount("l2", "miss"));
+    }
+
+    @Test
+    void shouldPeekLocalTierWithoutReachingSharedTier() {
+        // Given
+        TwoLevelCache nodeA = node("productDetails");
+        TwoLevelCache nodeB = node("productDetails");
+        ProductDetail product = new ProductDetail("2", "Product 2", 20.0, true);
+        nodeA.put("2", product);
+
+        // When
+        Object local = nodeA.peek("2");
+        Object remote = nodeB.peek("2");
+
+        // Then
+        assertEquals(product, local);
+        assertNull(remote);
+        assertEquals(0, tierCount("l2", "hit") + tierCount("l2", "miss"));
+        assertEquals(1, tierCount("local", "hit"));
+        assertEquals(1, tierCount("local", "miss"));
+    }
+
+    @Test
+    void shouldKeepCachedNullValues() {
+        // Given
+        TwoLevelCache nodeA = node("productDetails");
+        TwoLevelCache nodeB = node("productDetails");
+
+        // When
+        nodeA.put("5", null);
+
+        // Then
+        Cache.ValueWrapper cached = nodeB.get("5");
+        assertNotNull(cached);
+        assertNull(cached.get());
+    }
+
+    @Test
+    void shouldLoadOnceAndWriteBothTiers() {
+        // Given
+        TwoLevelCache nodeA = node("similarProducts");
+        TwoLevelCache nodeB = node("similarProducts");
+        List<ProductDetail> products = Arrays.asList(
+                new ProductDetail("2", "Product 2", 20.0, true),
+                new ProductDetail("3", "Product 3", 30.0, false));
+
+        // When
+        nodeA.retrieve("1", () -> CompletableFuture.completedFuture(products)).join();
+        List<ProductDetail> fromB = nodeB.retrieve("1", () -> CompletableFuture.completedFuture(List.<ProductDetail>of())).join();
+
+        // Then
+        assertEquals(products, fromB);
+        assertEquals(1, l2Cache.size());
+    }
+
+    @Test
+    void shouldCountLocalTierOnLoadingRetrieve() {
+        // Given
+        TwoLevelCache cache = node("similarProducts");
+        List<ProductDetail> products = List.of(new ProductDetail("2", "Product 2", 20.0, true));
+
+        // When
+        cache.retrieve("1", () -> CompletableFuture.completedFuture(products)).join();
+        cache.retrieve("1", () -> CompletableFuture.completedFuture(List.<ProductDetail>of())).join();
+
+        // Then
+        assertEquals(1, tierCount("local", "miss"));
+        assertEquals(1, tierCount("local", "hit"));
+        assertEquals(1, tierCount("l2", "miss"));
+    }
+
+    @Test
+    void shouldLoadThroughUndecodableSharedValue() {
+        // Given: a payload another version wrote in an incompatible format
+        TwoLevelCache cache = node("similarProducts");
+        l2Cache.put("test:similarProducts:1", new byte[] {1, 2, 3}, Duration.ofMinutes(1));
+        List<ProductDetail> products = List.of(new ProductDetail("2", "Product 2", 20.0, true));
+
+        // When
+        List<ProductDetail> loaded = cache.retrieve("1", () -> CompletableFuture.completedFuture(products)).join();
+
+        // Then
+        assertEquals(products, loaded);
+        assertEquals(1, tierCount("l2", "miss"));
+        assertEquals(products, node("similarProducts").get("1").get());
+    }
+
+    @Test
+    void shouldKeepValuesLocalWhileSharedWritesArePaused() {
+        // Given
+        TwoLevelCache cache = node("productDetails");
+        cache.setSharedWrites(false);
+
+        // When
+        cache.put("2", new ProductDetail("2", "Product 2", 20.0, true));
+        cache.clear();
+
+        // Then
+        assertEquals(0, l2Cache.size());
+        assertNull(node("productDetails").get("2"));
+    }
+
+    @Test
+    void shouldEvictBothTiers() {
+        // Given
+        TwoLevelCache nodeA = node("productDetails");
+        TwoLevelCache nodeB = node("productDetails");
+        nodeA.put("2", new ProductDetail("2", "Product 2", 20.0, true));
+
+        // When
+        nodeA.evict("2");
+
+        // Then
+        assertNull(nodeB.get("2"));
+        assertEquals(0, l2Cache.size());
+    }
+
+    @Test
+    void shouldDropLocalCopiesOfOtherNodesOnEviction() {
+        // Given: both nodes hold the product in their local tier
+        TwoLevelCache nodeA = node("productDetails");
+        TwoLevelCache nodeB = node("productDetails");
+        TwoLevelCache otherCache = node("similarProducts");
+        nodeA.put("2", new ProductDetail("2", "Product 2", 20.0, true));
+        assertNotNull(nodeB.get("2"));
+        otherCache.put("2", List.of());
+
+        // When
+        nodeA.evict("2");
+
+        // Then
+        assertNull(nodeB.peek("2"));
+        assertNotNull(otherCache.peek("2"));
+    }
+}
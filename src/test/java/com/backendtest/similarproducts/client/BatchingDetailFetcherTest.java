@@ -0,0 +1,86 @@
+package com.backendtest.similarproducts.client;
+
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
+import com.backendtest.similarproducts.model.ProductDetail;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class BatchingDetailFetcherTest {
+
+    private final MockWebServer server = new MockWebServer();
+    private final List<String> singleFetches = new CopyOnWriteArrayList<>();
+    private BatchingDetailFetcher fetcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server.start();
+        DetailFetcher fallback = productId -> {
+            singleFetches.add(productId);
+            return Mono.just(new ProductDetail(productId, "Single " + productId, 1.0, true));
+        };
+        fetcher = new BatchingDetailFetcher(WebClient.create(), fallback, mock(HotKeyTracker.class),
+                "http://localhost:" + server.getPort() + "/product?ids={ids}", 32, Duration.ofMillis(50), "{}");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void shouldMergeConcurrentLookupsIntoOneRequest() throws InterruptedException {
+        // Given
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("""
+                [{"id":"1","name":"Shirt","price":9.99,"availability":true},
+                 {"id":"2","name":"Dress","price":19.99,"availability":false}]"""));
+
+        // When: product 3 is missing from the batch answer
+        StepVerifier.create(Flux.merge(fetcher.fetch("1"), fetcher.fetch("2"), fetcher.fetch("3"), fetcher.fetch("1"))
+                        .map(ProductDetail::getName)
+                        .collectSortedList())
+                .expectNext(List.of("Dress", "Shirt", "Shirt"))
+                .verifyComplete();
+
+        // Then
+        assertEquals(1, server.getRequestCount());
+        RecordedRequest request = server.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("/product", request.getRequestUrl().encodedPath());
+        assertEquals("1,2,3", request.getRequestUrl().queryParameter("ids"));
+        assertEquals(List.of(), singleFetches);
+    }
+
+    @Test
+    void shouldFallBackToSingleRequestsWithoutBatchSupport() {
+        // Given
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        // When
+        StepVerifier.create(Flux.merge(fetcher.fetch("1"), fetcher.fetch("2")).map(ProductDetail::getId).collectSortedList())
+                .expectNext(List.of("1", "2"))
+                .verifyComplete();
+        StepVerifier.create(fetcher.fetch("3").map(ProductDetail::getId))
+                .expectNext("3")
+                .verifyComplete();
+
+        // Then: only the first batch reached the batch endpoint
+        assertEquals(1, server.getRequestCount());
+        assertEquals(List.of("1", "2", "3"), singleFetches.stream().sorted().toList());
+    }
+}
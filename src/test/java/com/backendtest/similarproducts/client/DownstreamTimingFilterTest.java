@@ -0,0 +1,81 @@
+package com.backendtest.similarproducts.client;
+
+import com.backendtest.similarproducts.trace.TraceRecorder;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class DownstreamTimingFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MockWebServer server = new MockWebServer();
+    private final TraceRecorder traceRecorder = mock(TraceRecorder.class);
+    private DownstreamTimingFilter filter;
+    private WebClient webClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server.start();
+        String baseUrl = "http://localhost:" + server.getPort();
+        filter = new DownstreamTimingFilter(meterRegistry, traceRecorder,
+                baseUrl + "/product/{productId}/similarids", baseUrl + "/product/{productId}",
+                baseUrl + "/product?ids={ids}", "/internal/peer/product/{productId}", 500);
+        webClient = WebClient.builder().baseUrl(baseUrl).filter(filter).build();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void shouldMapPathsToRouteTemplates() {
+        assertEquals("/product/{productId}", filter.route("/product/42"));
+        assertEquals("/product/{productId}/similarids", filter.route("/product/42/similarids?x=1"));
+        assertEquals("/internal/peer/product/{productId}", filter.route("/internal/peer/product/7"));
+        assertEquals("/product", filter.route("/product?ids=1,2"));
+        assertEquals("other", filter.route("/product/42/reviews"));
+    }
+
+    @Test
+    void shouldTimePhasesByRouteAndStatusClass() {
+        // Given
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("[\"2\",\"3\"]"));
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        // When
+        StepVerifier.create(webClient.get().uri("/product/1/similarids").retrieve().bodyToMono(String.class))
+                .expectNext("[\"2\",\"3\"]")
+                .verifyComplete();
+        StepVerifier.create(webClient.get().uri("/product/5").exchangeToMono(response -> response.releaseBody()))
+                .verifyComplete();
+
+        // Then
+        for (String phase : new String[] {"downstream.ttfb", "downstream.body", "downstream.total"}) {
+            assertEquals(1, timer(phase, "/product/{productId}/similarids", "2xx").count());
+            assertEquals(1, timer(phase, "/product/{productId}", "4xx").count());
+        }
+        verify(traceRecorder).downstream(eq("/product/{productId}"), eq("/product/5"), eq(404), anyLong());
+    }
+
+    private Timer timer(String name, String route, String status) {
+        Timer timer = meterRegistry.find(name).tag("route", route).tag("status", status).timer();
+        assertNotNull(timer, name + " " + route + " " + status);
+        return timer;
+    }
+}
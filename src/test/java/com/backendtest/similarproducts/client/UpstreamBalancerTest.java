@@ -0,0 +1,140 @@
+package com.backendtest.similarproducts.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamBalancerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MockWebServer fast = new MockWebServer();
+    private final MockWebServer slow = new MockWebServer();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fast.start();
+        slow.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fast.shutdown();
+        slow.shutdown();
+    }
+
+    @Test
+    void shouldSendMostCallsToFasterInstance() {
+        // Given: stand-in replicas with different injected latencies
+        fast.setDispatcher(respond(200, 0));
+        slow.setDispatcher(respond(200, 50));
+        WebClient webClient = webClient(balancer(5));
+
+        // When
+        call(webClient, 100, 4);
+
+        // Then
+        assertEquals(100, fast.getRequestCount() + slow.getRequestCount());
+        assertTrue(fast.getRequestCount() > 3 * slow.getRequestCount(),
+                fast.getRequestCount() + " fast, " + slow.getRequestCount() + " slow");
+    }
+
+    @Test
+    void shouldAvoidInstanceFailingFast() {
+        // Given: a replica answering errors faster than the healthy one answers
+        fast.setDispatcher(respond(200, 5));
+        slow.setDispatcher(respond(503, 0));
+        WebClient webClient = webClient(balancer(5));
+
+        // When
+        call(webClient, 50, 1);
+
+        // Then
+        assertTrue(slow.getRequestCount() <= 2, slow.getRequestCount() + " calls to the failing instance");
+    }
+
+    @Test
+    void shouldEjectFailingInstance() {
+        // Given
+        fast.setDispatcher(respond(200, 0));
+        slow.setDispatcher(respond(503, 0));
+        WebClient webClient = webClient(balancer(1));
+
+        // When
+        call(webClient, 20, 1);
+
+        // Then
+        assertEquals(1, slow.getRequestCount());
+        assertEquals(1, meterRegistry.get("upstream.instance.ejections").tag("instance", url(slow)).counter().count());
+        assertEquals(1, meterRegistry.get("upstream.instance.ejected").tag("instance", url(slow)).gauge().value());
+    }
+
+    @Test
+    void shouldSendTrafficAgainToRecoveredInstance() throws InterruptedException {
+        // Given: a replica ejected after failing, which then recovers faster than the other one
+        fast.setDispatcher(respond(200, 5));
+        slow.setDispatcher(respond(503, 0));
+        WebClient webClient = webClient(balancer(1, 500));
+        call(webClient, 5, 1);
+        assertEquals(1, meterRegistry.get("upstream.instance.ejections").tag("instance", url(slow)).counter().count());
+        slow.setDispatcher(respond(200, 0));
+        int failedCalls = slow.getRequestCount();
+        Thread.sleep(600);
+
+        // When
+        call(webClient, 40, 1);
+
+        // Then
+        int recoveredCalls = slow.getRequestCount() - failedCalls;
+        assertTrue(recoveredCalls > 10, recoveredCalls + " calls to the recovered instance");
+    }
+
+    private UpstreamBalancer balancer(int consecutiveFailures) {
+        return balancer(consecutiveFailures, 60000);
+    }
+
+    private UpstreamBalancer balancer(int consecutiveFailures, int baseEjectionTime) {
+        return new UpstreamBalancer(meterRegistry, "http://product-api:3001/product/{productId}",
+                new String[] {url(fast), url(slow)}, 0.3, 1000, consecutiveFailures, baseEjectionTime, 300000, 50);
+    }
+
+    private static WebClient webClient(UpstreamBalancer balancer) {
+        return WebClient.builder().baseUrl("http://product-api:3001").filter(balancer).build();
+    }
+
+    private static void call(WebClient webClient, int calls, int concurrency) {
+        StepVerifier.create(Flux.range(0, calls)
+                        .flatMap(i -> webClient.get().uri("/product/{productId}", i)
+                                .exchangeToMono(response -> response.releaseBody()), concurrency))
+                .verifyComplete();
+    }
+
+    private static String url(MockWebServer server) {
+        return "http://localhost:" + server.getPort();
+    }
+
+    private static Dispatcher respond(int status, long delayMillis) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(status)
+                        .setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS)
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{}");
+            }
+        };
+    }
+}
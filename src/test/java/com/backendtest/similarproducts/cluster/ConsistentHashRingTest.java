@@ -0,0 +1,53 @@
+package com.backendtest.similarproducts.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final List<String> PEERS = List.of("http://a:5001", "http://b:5001", "http://c:5001");
+
+    @Test
+    void shouldSpreadKeysAcrossPeers() {
+        // Given
+        ConsistentHashRing ring = new ConsistentHashRing(PEERS, 100);
+        Map<String, Integer> owned = new HashMap<>();
+
+        // When
+        for (int i = 0; i < 30000; i++) {
+            owned.merge(ring.ownerOf(String.valueOf(i)), 1, Integer::sum);
+        }
+
+        // Then
+        assertEquals(3, owned.size());
+        owned.values().forEach(count -> assertTrue(count > 7000, "unbalanced ring: " + owned));
+    }
+
+    @Test
+    void shouldOnlyMoveKeysOfRemovedPeer() {
+        // Given
+        ConsistentHashRing ring = new ConsistentHashRing(PEERS, 100);
+        ConsistentHashRing shrunk = new ConsistentHashRing(PEERS.subList(0, 2), 100);
+
+        // When / Then
+        for (int i = 0; i < 10000; i++) {
+            String key = String.valueOf(i);
+            String owner = ring.ownerOf(key);
+            if (!owner.equals("http://c:5001")) {
+                assertEquals(owner, shrunk.ownerOf(key));
+            }
+        }
+    }
+
+    @Test
+    void shouldReturnNullOwnerOnEmptyRing() {
+        assertNull(new ConsistentHashRing(List.of(), 100).ownerOf("1"));
+    }
+}
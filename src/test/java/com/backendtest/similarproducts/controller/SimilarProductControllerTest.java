@@ -1,22 +1,38 @@
 package com.backendtest.similarproducts.controller;
 
+import com.backendtest.similarproducts.client.ProductClient;
+import com.backendtest.similarproducts.client.UpstreamStatusException;
+import com.backendtest.similarproducts.hotkeys.HotKeyTracker;
 import com.backendtest.similarproducts.model.ProductDetail;
 import com.backendtest.similarproducts.service.SimilarProductService;
+import com.backendtest.similarproducts.service.SimilarProductsFastPath;
+import com.backendtest.similarproducts.service.SimilarProductsIndex;
+import com.backendtest.similarproducts.trace.TraceRecorder;
+import com.backendtest.similarproducts.tuning.PerformanceSettings;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.http.HttpStatus;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeoutException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,9 +41,27 @@ class SimilarProductControllerTest {
     @Mock
     private SimilarProductService similarProductService;
 
-    @InjectMocks
+    @Mock
+    private ProductClient productClient;
+
+    @Mock
+    private HotKeyTracker hotKeyTracker;
+
+    @Mock
+    private TraceRecorder traceRecorder;
+
     private SimilarProductController similarProductController;
 
+    @BeforeEach
+    void setUp() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAsyncCacheMode(true);
+        SimilarProductsResponses responses = new SimilarProductsResponses(cacheManager, "similarProducts");
+        SimilarProductsFastPath fastPath = new SimilarProductsFastPath(cacheManager, new SimilarProductsIndex(100, 60),
+                new SimpleMeterRegistry(), traceRecorder, "similarProducts", "similarIds", "productDetails");
+        similarProductController = new SimilarProductController(similarProductService, responses, hotKeyTracker, fastPath);
+    }
+
     @Test
     void shouldGetSimilarProducts() {
         // Given
@@ -39,50 +73,120 @@ class SimilarProductControllerTest {
         when(similarProductService.getSimilarProducts(productId)).thenReturn(Mono.just(similarProducts));
         
         // When & Then
-        StepVerifier.create(similarProductController.getSimilarProducts(productId))
-                .expectNext(similarProducts)
+        StepVerifier.create(similarProductController.getSimilarProducts(productId, null, null, null))
+                .assertNext(response -> {
+                    assertEquals(similarProducts, response.getBody());
+                    assertNotNull(response.getHeaders().getETag());
+                    // Never written to the cache, so clients must revalidate it
+                    assertEquals("no-cache", response.getHeaders().getCacheControl());
+                })
                 .verifyComplete();
     }
 
     @Test
-    void shouldHandleNotFoundAndReturnEmptyList() {
-        // Given
-        String productId = "999";
-        
-        when(similarProductService.getSimilarProducts(productId)).thenReturn(
-                Mono.error(WebClientResponseException.create(HttpStatus.NOT_FOUND.value(), "Not Found", null, null, null)));
-        
+    void shouldSendRemainingTtlOfCachedListOnly() {
+        // Given: a list cached for 600 seconds
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager("similarProducts");
+        cacheManager.setCaffeine(Caffeine.newBuilder().expireAfterWrite(Duration.ofSeconds(600)));
+        cacheManager.setAsyncCacheMode(true);
+        List<ProductDetail> products = List.of(new ProductDetail("2", "Product 2", 20.0, true));
+        cacheManager.getCache("similarProducts").put("1", products);
+        SimilarProductsResponses responses = new SimilarProductsResponses(cacheManager, "similarProducts");
+
+        // When & Then: the cached list gets the time it has left, an uncached one must be revalidated
+        assertMaxAgeWithin(responses.cached("1", products, null, MediaType.APPLICATION_JSON), 590, 600);
+        assertEquals("no-cache", responses.cached("9", products, null, MediaType.APPLICATION_JSON)
+                .getHeaders().getCacheControl());
+
+        // When the TTL is tuned at runtime, the max-age follows it
+        ((com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache("similarProducts").getNativeCache())
+                .policy().expireAfterWrite().orElseThrow().setExpiresAfter(Duration.ofSeconds(120));
+        assertMaxAgeWithin(responses.cached("1", products, null, MediaType.APPLICATION_JSON), 110, 120);
+    }
+
+    private static void assertMaxAgeWithin(ResponseEntity<Object> response, long min, long max) {
+        long maxAge = Long.parseLong(response.getHeaders().getCacheControl().substring("max-age=".length()));
+        assertTrue(maxAge >= min && maxAge <= max, "max-age " + maxAge);
+    }
+
+    @Test
+    void shouldNotLetClientsCacheListWhenSimilarIdsTimeOut() {
+        // Given: a real service whose similar IDs call never answers
+        when(productClient.getProductDetail("1")).thenReturn(Mono.just(new ProductDetail("1", "Product 1", 10.0, true)));
+        when(productClient.getSimilarProductIds("1")).thenReturn(Mono.never());
+        SimilarProductController controller = controllerWithService();
+
         // When & Then
-        StepVerifier.create(similarProductController.getSimilarProducts(productId))
-                .expectNext(Collections.emptyList())
-                .verifyComplete();
+        StepVerifier.create(controller.getSimilarProducts("1", null, null, null))
+                .assertNext(response -> {
+                    assertEquals(Collections.emptyList(), response.getBody());
+                    assertEquals("no-store", response.getHeaders().getCacheControl());
+                    assertNull(response.getHeaders().getETag());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
     }
-    
+
     @Test
-    void shouldHandleTimeoutAndReturnEmptyList() {
-        // Given
-        String productId = "1";
-        
-        when(similarProductService.getSimilarProducts(productId)).thenReturn(
-                Mono.error(new TimeoutException("Timeout occurred")));
-        
+    void shouldServePartialListUncachedWhenDetailTimesOut() {
+        // Given: a real service whose client times out the detail call for product 2
+        ProductDetail product3 = new ProductDetail("3", "Product 3", 30.0, false);
+        when(productClient.getProductDetail("1")).thenReturn(Mono.just(new ProductDetail("1", "Product 1", 10.0, true)));
+        when(productClient.getSimilarProductIds("1")).thenReturn(Mono.just(List.of("2", "3")));
+        when(productClient.getProductDetail("2"))
+                .thenReturn(Mono.error(new UpstreamStatusException(HttpStatus.GATEWAY_TIMEOUT)));
+        when(productClient.getProductDetail("3")).thenReturn(Mono.just(product3));
+        SimilarProductController controller = controllerWithService();
+
         // When & Then
-        StepVerifier.create(similarProductController.getSimilarProducts(productId))
-                .expectNext(Collections.emptyList())
-                .verifyComplete();
+        StepVerifier.create(controller.getSimilarProducts("1", null, null, null))
+                .assertNext(response -> {
+                    assertEquals(List.of(product3), response.getBody());
+                    assertEquals("no-store", response.getHeaders().getCacheControl());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
     }
-    
+
+    /**
+     * Controller backed by a real service over the mocked product client, so that failures take the real path
+     */
+    private SimilarProductController controllerWithService() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAsyncCacheMode(true);
+        SimilarProductService service = new SimilarProductService(productClient, new SimilarProductsIndex(100, 60),
+                cacheManager, new PerformanceSettings(1000, 1500, 100, 2, 4, 10), 10, "similarProducts", 1);
+        SimilarProductsFastPath fastPath = new SimilarProductsFastPath(cacheManager, new SimilarProductsIndex(100, 60),
+                new SimpleMeterRegistry(), traceRecorder, "similarProducts", "similarIds", "productDetails");
+        return new SimilarProductController(service, new SimilarProductsResponses(cacheManager, "similarProducts"),
+                hotKeyTracker, fastPath);
+    }
+
     @Test
-    void shouldHandleGenericErrorAndReturnEmptyList() {
+    void shouldDeriveETagFromListContent() {
         // Given
-        String productId = "1";
-        
-        when(similarProductService.getSimilarProducts(productId)).thenReturn(
-                Mono.error(new RuntimeException("Some error")));
-        
+        List<ProductDetail> products = List.of(new ProductDetail("2", "Product 2", 20.0, true));
+        List<ProductDetail> sameProducts = List.of(new ProductDetail("2", "Product 2", 20.0, true));
+        List<ProductDetail> changedProducts = List.of(new ProductDetail("2", "Product 2", 25.0, true));
+
+        MediaType json = MediaType.APPLICATION_JSON;
+
         // When & Then
-        StepVerifier.create(similarProductController.getSimilarProducts(productId))
-                .expectNext(Collections.emptyList())
-                .verifyComplete();
+        assertEquals(SimilarProductsResponses.eTag(products, null, json), SimilarProductsResponses.eTag(sameProducts, null, json));
+        assertNotEquals(SimilarProductsResponses.eTag(products, null, json), SimilarProductsResponses.eTag(changedProducts, null, json));
+        assertNotEquals(SimilarProductsResponses.eTag(products, null, json),
+                SimilarProductsResponses.eTag(products, null, MediaType.APPLICATION_CBOR));
+    }
+
+    @Test
+    void shouldNegotiateEncodingWithJsonAsDefault() {
+        MediaType smile = MediaType.valueOf(SimilarProductsResponses.APPLICATION_SMILE_VALUE);
+
+        assertEquals(MediaType.APPLICATION_JSON, SimilarProductsResponses.encoding(null));
+        assertEquals(MediaType.APPLICATION_JSON, SimilarProductsResponses.encoding("*/*"));
+        assertEquals(MediaType.APPLICATION_JSON, SimilarProductsResponses.encoding("application/*"));
+        assertEquals(smile, SimilarProductsResponses.encoding("application/x-jackson-smile, application/json;q=0.5"));
+        assertEquals(MediaType.APPLICATION_CBOR, SimilarProductsResponses.encoding("application/cbor, */*"));
+        assertEquals(MediaType.APPLICATION_JSON, SimilarProductsResponses.encoding("application/cbor;q=0.2, application/json"));
     }
-} 
\ No newline at end of file
+}
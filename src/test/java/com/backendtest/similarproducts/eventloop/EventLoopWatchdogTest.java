@@ -0,0 +1,63 @@
+package com.backendtest.similarproducts.eventloop;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLoopWatchdogTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoopResources loopResources = LoopResources.create("watched", 1, 1, false);
+    private final EventLoopWatchdog watchdog = new EventLoopWatchdog(meterRegistry, loopResources, "watched", true, 10, 100);
+
+    @AfterEach
+    void tearDown() {
+        watchdog.stop();
+        loopResources.dispose();
+    }
+
+    @Test
+    void shouldCountStallOfBusyEventLoop() throws InterruptedException {
+        // Given
+        watchdog.start();
+        Thread.sleep(50);
+
+        // When: CPU-bound work on the event loop, which BlockHound cannot see
+        loopResources.onClient(true).next().execute(() -> spin(Duration.ofMillis(300)));
+        Thread.sleep(500);
+
+        // Then
+        assertEquals(1, meterRegistry.get("eventloop.stalls").tag("loop", "watched-0").counter().count());
+        Timer latency = meterRegistry.get("eventloop.task.latency").tag("loop", "watched-0").timer();
+        assertTrue(latency.max(TimeUnit.MILLISECONDS) >= 200, latency.max(TimeUnit.MILLISECONDS) + " ms");
+    }
+
+    @Test
+    void shouldNotCountStallOfIdleEventLoop() throws InterruptedException {
+        // When
+        watchdog.start();
+        Thread.sleep(200);
+
+        // Then
+        assertEquals(0, meterRegistry.get("eventloop.stalls").tag("loop", "watched-0").counter().count());
+        assertTrue(meterRegistry.get("eventloop.task.latency").tag("loop", "watched-0").timer().count() > 0);
+    }
+
+    /**
+     * Busy loop, without {@link Thread#onSpinWait()} which BlockHound reports as blocking
+     */
+    private static void spin(Duration duration) {
+        long end = System.nanoTime() + duration.toNanos();
+        while (System.nanoTime() < end) {
+            // Spin
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.backendtest.similarproducts.hotkeys;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeavyHittersTest {
+
+    @Test
+    void shouldFindHotKeysInLongTail() {
+        // Given
+        HeavyHitters heavyHitters = new HeavyHitters(1024, 4, 32);
+        Random random = new Random(42);
+
+        // When: three hot keys among 100k distinct cold ones
+        for (int i = 0; i < 200000; i++) {
+            int draw = random.nextInt(100);
+            if (draw < 10) {
+                heavyHitters.add("hot-a");
+            } else if (draw < 15) {
+                heavyHitters.add("hot-b");
+            } else if (draw < 18) {
+                heavyHitters.add("hot-c");
+            } else {
+                heavyHitters.add("cold-" + random.nextInt(100000));
+            }
+        }
+
+        // Then
+        List<HeavyHitters.Entry> top = heavyHitters.top(3);
+        assertEquals(List.of("hot-a", "hot-b", "hot-c"), top.stream().map(HeavyHitters.Entry::key).toList());
+        assertTrue(top.get(0).count() >= 20000, "underestimated count: " + top);
+    }
+
+    @Test
+    void shouldHalveCountsOnDecay() {
+        // Given
+        HeavyHitters heavyHitters = new HeavyHitters(64, 2, 8);
+        for (int i = 0; i < 10; i++) {
+            heavyHitters.add("1");
+        }
+
+        // When
+        heavyHitters.decay();
+
+        // Then
+        assertEquals(5, heavyHitters.estimate("1"));
+        heavyHitters.decay();
+        heavyHitters.decay();
+        heavyHitters.decay();
+        assertTrue(heavyHitters.top(10).isEmpty());
+    }
+}
@@ -0,0 +1,121 @@
+package com.backendtest.similarproducts.integration;
+
+import com.backendtest.similarproducts.SimilarProductsApplication;
+import com.backendtest.similarproducts.benchmark.SimuladoDispatcher;
+import com.backendtest.similarproducts.client.PeerClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestClient;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts several application instances on localhost ports sharing product ownership through consistent hashing
+ */
+class PeerClusterIntegrationTest {
+
+    private static final int NODES = 3;
+    private static final String PEER_TOKEN = "cluster-secret";
+
+    private final Map<String, AtomicInteger> downstreamCalls = new ConcurrentHashMap<>();
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private final List<Integer> ports = new ArrayList<>();
+    private MockWebServer productApi;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SimuladoDispatcher simulado = new SimuladoDispatcher();
+        productApi = new MockWebServer();
+        productApi.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                downstreamCalls.computeIfAbsent(request.getPath(), path -> new AtomicInteger()).incrementAndGet();
+                return simulado.dispatch(request);
+            }
+        });
+        productApi.start();
+
+        for (int i = 0; i < NODES; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                ports.add(socket.getLocalPort());
+            }
+        }
+        String peers = ports.stream().map(port -> "http://localhost:" + port).collect(Collectors.joining(","));
+        String baseUrl = "http://localhost:" + productApi.getPort();
+        for (int port : ports) {
+            nodes.add(new SpringApplicationBuilder(SimilarProductsApplication.class).run(
+                    "--server.port=" + port,
+                    "--cluster.enabled=true",
+                    "--cluster.self=http://localhost:" + port,
+                    "--cluster.peers=" + peers,
+                    // Generous, so that the first requests to cold nodes are not served by the fallback
+                    "--cluster.peer-timeout=5000",
+                    "--cluster.peer-token=" + PEER_TOKEN,
+                    "--api.product.similarids.url=" + baseUrl + "/product/{productId}/similarids",
+                    "--api.product.detail.url=" + baseUrl + "/product/{productId}"));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        nodes.forEach(ConfigurableApplicationContext::close);
+        productApi.shutdown();
+    }
+
+    @Test
+    void shouldLoadEachDetailOncePerCluster() {
+        // When every node serves the same similar products
+        for (int port : ports) {
+            RestClient client = RestClient.create("http://localhost:" + port);
+            for (String productId : List.of("1", "4")) {
+                String body = client.get().uri("/product/{id}/similar", productId).retrieve().body(String.class);
+                assertTrue(body.contains("\"id\":\"2\""));
+            }
+        }
+
+        // Then each product detail reached the product API at most once
+        downstreamCalls.forEach((path, calls) -> {
+            if (!path.endsWith("/similarids")) {
+                assertEquals(1, calls.get(), "downstream calls for " + path);
+            }
+        });
+        assertTrue(downstreamCalls.containsKey("/product/2"));
+    }
+
+    @Test
+    void shouldRejectPeerRequestsWithoutTheClusterToken() {
+        RestClient client = RestClient.create("http://localhost:" + ports.get(0));
+
+        // When a client calls the peer endpoint directly, without or with a wrong token
+        int withoutToken = client.get().uri("/internal/peer/product/{id}", "2")
+                .exchange((request, response) -> response.getStatusCode().value());
+        int wrongToken = client.get().uri("/internal/peer/product/{id}", "2")
+                .header(PeerClient.PEER_TOKEN_HEADER, "guess")
+                .exchange((request, response) -> response.getStatusCode().value());
+        int withToken = client.get().uri("/internal/peer/product/{id}", "2")
+                .header(PeerClient.PEER_TOKEN_HEADER, PEER_TOKEN)
+                .exchange((request, response) -> response.getStatusCode().value());
+
+        // Then only the peers sharing the token are served
+        assertEquals(403, withoutToken);
+        assertEquals(403, wrongToken);
+        assertEquals(200, withToken);
+        assertEquals(1, downstreamCalls.get("/product/2").get());
+    }
+}
@@ -2,6 +2,9 @@ package com.backendtest.similarproducts.integration;
 
 import com.backendtest.similarproducts.client.ProductClient;
 import com.backendtest.similarproducts.model.ProductDetail;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +13,8 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +23,7 @@ import org.springframework.web.reactive.function.client.WebClientResponseExcepti
 import reactor.core.publisher.Mono;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,7 +34,6 @@ import static org.mockito.Mockito.*;
     "cache.name.similar-products=similarProducts",
     "cache.name.product-details=productDetails",
     "cache.name.similar-ids=similarIds",
-    "cache.name.product-detail-optimized=productDetailOptimized",
     "cache.name.short-lived=shortLivedCache",
     "circuit-breaker.name.product-api=productApi"
 })
@@ -120,6 +125,7 @@ class SimilarProductIntegrationTest {
         // Verify response
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
+        assertEquals("no-store", response.getHeaders().getCacheControl());
     }
     
     @Test
@@ -144,10 +150,80 @@ class SimilarProductIntegrationTest {
                 null,
                 new ParameterizedTypeReference<List<ProductDetail>>() {});
 
-        // Verify response - should contain only product 3
+        // Verify response - should contain only product 3, which clients must not cache
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals(1, response.getBody().size());
         assertEquals("3", response.getBody().get(0).getId());
+        assertEquals("no-store", response.getHeaders().getCacheControl());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void shouldAnswerNotModifiedWhenETagMatches() {
+        // Configure product with one similar product
+        when(productClient.getProductDetail("20")).thenReturn(Mono.just(new ProductDetail("20", "Product 20", 20.0, true)));
+        when(productClient.getSimilarProductIds("20")).thenReturn(Mono.just(List.of("21")));
+        when(productClient.getProductDetail("21")).thenReturn(Mono.just(new ProductDetail("21", "Product 21", 21.0, true)));
+
+        // First request returns the body with its validators
+        String url = "http://localhost:" + port + "/product/20/similar";
+        ResponseEntity<String> first = restTemplate.getForEntity(url, String.class);
+        String eTag = first.getHeaders().getETag();
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertNotNull(eTag);
+        assertTrue(first.getHeaders().getCacheControl().startsWith("max-age="));
+
+        // Revalidation with the same ETag returns 304 without body
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+        ResponseEntity<String> second = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getStatusCode());
+        assertNull(second.getBody());
+        assertEquals(eTag, second.getHeaders().getETag());
+    }
+
+    @Test
+    void shouldLimitAndProjectSimilarProducts() {
+        // Configure product with three similar products
+        when(productClient.getProductDetail("30")).thenReturn(Mono.just(new ProductDetail("30", "Product 30", 30.0, true)));
+        when(productClient.getSimilarProductIds("30")).thenReturn(Mono.just(List.of("31", "32", "33")));
+        when(productClient.getProductDetail("31")).thenReturn(Mono.just(new ProductDetail("31", "Product 31", 31.0, true)));
+        when(productClient.getProductDetail("32")).thenReturn(Mono.just(new ProductDetail("32", "Product 32", 32.0, false)));
+        when(productClient.getProductDetail("33")).thenReturn(Mono.just(new ProductDetail("33", "Product 33", 33.0, true)));
+
+        // Request the first two with only id and name
+        String url = "http://localhost:" + port + "/product/30/similar?limit=2&fields=id,name";
+        ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+
+        // Verify response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("[{\"id\":\"31\",\"name\":\"Product 31\"},{\"id\":\"32\",\"name\":\"Product 32\"}]", response.getBody());
+    }
+
+    @Test
+    void shouldWriteBinaryEncodingsOnRequest() throws Exception {
+        // Configure product with one similar product
+        when(productClient.getProductDetail("40")).thenReturn(Mono.just(new ProductDetail("40", "Product 40", 40.0, true)));
+        when(productClient.getSimilarProductIds("40")).thenReturn(Mono.just(List.of("41")));
+        when(productClient.getProductDetail("41")).thenReturn(Mono.just(new ProductDetail("41", "Product 41", 41.0, true)));
+
+        String url = "http://localhost:" + port + "/product/40/similar?fields=id,price";
+        ResponseEntity<byte[]> json = restTemplate.getForEntity(url, byte[].class);
+        for (ObjectMapper mapper : List.of(new ObjectMapper(new SmileFactory()), new ObjectMapper(new CBORFactory()))) {
+            // Request the encoding through the Accept header
+            String encoding = mapper.getFactory().getFormatName().equals(SmileFactory.FORMAT_NAME_SMILE)
+                    ? "application/x-jackson-smile" : "application/cbor";
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.ACCEPT, encoding);
+            ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+            // Verify the projected body and its own ETag
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals(encoding, response.getHeaders().getContentType().toString());
+            assertEquals(List.of(Map.of("id", "41", "price", 41.0)), mapper.readValue(response.getBody(), List.class));
+            assertNotEquals(json.getHeaders().getETag(), response.getHeaders().getETag());
+            assertTrue(response.getHeaders().getVary().contains(HttpHeaders.ACCEPT));
+        }
+        assertEquals("application/json", json.getHeaders().getContentType().toString());
+    }
+}
@@ -0,0 +1,60 @@
+package com.backendtest.similarproducts.logging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitedLoggerTest {
+
+    @Mock
+    private Logger logger;
+
+    @Test
+    void shouldDropMessagesOverTheLimit() {
+        // Given
+        when(logger.isWarnEnabled()).thenReturn(true);
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 3);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            rateLimitedLogger.warn("Product not found: {}", "5");
+        }
+
+        // Then
+        verify(logger, times(3)).warn("Product not found: {}", "5");
+    }
+
+    @Test
+    void shouldLimitEachFormatSeparately() {
+        // Given
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 1);
+
+        // When & Then
+        assertEquals(0, rateLimitedLogger.acquire("first {}"));
+        assertEquals(-1, rateLimitedLogger.acquire("first {}"));
+        assertEquals(0, rateLimitedLogger.acquire("second {}"));
+    }
+
+    @Test
+    void shouldReportSuppressedMessagesInTheNextWindow() throws InterruptedException {
+        // Given
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(logger, 1);
+        rateLimitedLogger.acquire("message {}");
+        rateLimitedLogger.acquire("message {}");
+        rateLimitedLogger.acquire("message {}");
+
+        // When
+        Thread.sleep(1100);
+
+        // Then
+        assertEquals(2, rateLimitedLogger.acquire("message {}"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.backendtest.similarproducts.profiling;
+
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JfrProfilerTest {
+
+    @TempDir
+    Path directory;
+
+    private JfrProfiler profiler;
+
+    /**
+     * Sink for the busy work, so that the JIT cannot drop it
+     */
+    private long consumed;
+
+    @AfterEach
+    void tearDown() {
+        profiler.close();
+    }
+
+    @Test
+    void shouldSummariseApplicationHotspotsAndWriteRecording() throws Exception {
+        // Given
+        profiler = new JfrProfiler("com.backendtest.similarproducts", 10, 10, 150, 30, 60, 1 << 26, 20,
+                directory.resolve("profile.jfr").toString());
+
+        // When
+        JfrProfiler.Profile started = profiler.start(Duration.ofSeconds(30));
+        assertThrows(IllegalStateException.class, () -> profiler.start(null));
+        busyWork(Duration.ofSeconds(2));
+        profiler.stop();
+
+        // Then
+        JfrProfiler.Profile profile = profiler.profile();
+        assertEquals("running", started.state());
+        assertEquals("completed", profile.state());
+        assertTrue(profile.executionSamples() > 0, profile.toString());
+        assertTrue(profile.applicationMethods().stream()
+                .anyMatch(hotspot -> hotspot.frame().endsWith("JfrProfilerTest.busyWork")), profile.toString());
+        assertFalse(profile.allocationSites().isEmpty(), profile.toString());
+        assertTrue(profile.recording());
+        Path recording = profiler.recording();
+        assertNotNull(recording);
+        assertFalse(RecordingFile.readAllEvents(recording).isEmpty());
+    }
+
+    @Test
+    void shouldCapSessionDuration() {
+        // Given
+        profiler = new JfrProfiler("com.backendtest.similarproducts", 10, 10, 150, 30, 1, 1 << 26, 20,
+                directory.resolve("profile.jfr").toString());
+
+        // When
+        JfrProfiler.Profile profile = profiler.start(Duration.ofHours(1));
+
+        // Then
+        assertEquals(1, profile.durationSeconds());
+    }
+
+    private void busyWork(Duration duration) {
+        long end = System.nanoTime() + duration.toNanos();
+        while (System.nanoTime() < end) {
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                values.add(Integer.toString(i * 31));
+            }
+            consumed += values.hashCode();
+        }
+    }
+}
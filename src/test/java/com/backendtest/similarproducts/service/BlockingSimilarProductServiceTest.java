@@ -0,0 +1,130 @@
+package com.backendtest.similarproducts.service;
+
+import com.backendtest.similarproducts.client.BlockingProductClient;
+import com.backendtest.similarproducts.model.ProductDetail;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlockingSimilarProductServiceTest {
+
+    @Mock
+    private BlockingProductClient productClient;
+
+    private BlockingSimilarProductService similarProductService;
+
+    private CaffeineCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new CaffeineCacheManager("similarProducts");
+        similarProductService = new BlockingSimilarProductService(
+                productClient, new SimilarProductsIndex(100, 60), cacheManager, 500, 0, "similarProducts");
+    }
+
+    @AfterEach
+    void tearDown() {
+        similarProductService.shutdown();
+    }
+
+    @Test
+    void shouldGetSimilarProductsInOrder() {
+        // Given
+        String productId = "1";
+        ProductDetail product2 = new ProductDetail("2", "Product 2", 20.0, true);
+        ProductDetail product3 = new ProductDetail("3", "Product 3", 30.0, false);
+
+        when(productClient.getProductDetail(productId))
+            .thenReturn(new ProductDetail("1", "Product 1", 10.0, true));
+        when(productClient.getSimilarProductIds(productId))
+            .thenReturn(Arrays.asList("3", "2"));
+        when(productClient.getProductDetail("2")).thenReturn(product2);
+        when(productClient.getProductDetail("3")).thenReturn(product3);
+
+        // When
+        List<ProductDetail> products = similarProductService.getSimilarProducts(productId);
+
+        // Then
+        assertEquals(Arrays.asList(product3, product2), products);
+    }
+
+    @Test
+    void shouldReturnEmptyListWhenMainProductNotFound() {
+        // Given
+        when(productClient.getProductDetail("999")).thenReturn(null);
+
+        // When
+        List<ProductDetail> products = similarProductService.getSimilarProducts("999");
+
+        // Then
+        assertTrue(products.isEmpty());
+        verify(productClient, never()).getSimilarProductIds("999");
+    }
+
+    @Test
+    void shouldSkipMissingProductsAndSignalSlowOnes() {
+        // Given
+        String productId = "1";
+        ProductDetail product3 = new ProductDetail("3", "Product 3", 30.0, false);
+
+        when(productClient.getProductDetail(productId))
+            .thenReturn(new ProductDetail("1", "Product 1", 10.0, true));
+        when(productClient.getSimilarProductIds(productId))
+            .thenReturn(Arrays.asList("2", "3", "4"));
+        when(productClient.getProductDetail("2")).thenReturn(null);
+        when(productClient.getProductDetail("3")).thenReturn(product3);
+        when(productClient.getProductDetail("4")).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return new ProductDetail("4", "Product 4", 40.0, true);
+        });
+
+        // When
+        DegradedResultException degraded = assertThrows(DegradedResultException.class,
+                () -> similarProductService.getSimilarProducts(productId));
+
+        // Then: the products found are still served, flagged as degraded
+        assertEquals(Collections.singletonList(product3), degraded.getProducts());
+    }
+
+    @Test
+    void shouldBackfillMissingProductsUpToLimit() {
+        // Given
+        String productId = "1";
+        ProductDetail product2 = new ProductDetail("2", "Product 2", 20.0, true);
+        ProductDetail product5 = new ProductDetail("5", "Product 5", 50.0, true);
+
+        when(productClient.getProductDetail(productId))
+            .thenReturn(new ProductDetail("1", "Product 1", 10.0, true));
+        when(productClient.getSimilarProductIds(productId))
+            .thenReturn(Arrays.asList("2", "3", "4", "5", "6"));
+        when(productClient.getProductDetail("2")).thenReturn(product2);
+        when(productClient.getProductDetail("3")).thenReturn(null);
+        when(productClient.getProductDetail("4")).thenReturn(null);
+        when(productClient.getProductDetail("5")).thenReturn(product5);
+
+        // When
+        List<ProductDetail> products = similarProductService.getSimilarProducts(productId, 2);
+
+        // Then
+        assertEquals(Arrays.asList(product2, product5), products);
+        verify(productClient, never()).getProductDetail("6");
+        assertNull(cacheManager.getCache("similarProducts").get(productId));
+    }
+}
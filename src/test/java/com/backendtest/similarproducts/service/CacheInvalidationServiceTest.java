@@ -0,0 +1,180 @@
+package com.backendtest.similarproducts.service;
+
+import com.backendtest.similarproducts.cache.InMemoryL2Cache;
+import com.backendtest.similarproducts.cache.L2CacheCodec;
+import com.backendtest.similarproducts.cache.TwoLevelCache;
+import com.backendtest.similarproducts.cache.TwoLevelCacheManager;
+import com.backendtest.similarproducts.client.ProductClient;
+import com.backendtest.similarproducts.event.ProductChangeEvent;
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.tuning.PerformanceSettings;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationServiceTest {
+
+    @Mock
+    private ProductClient productClient;
+
+    private final CacheManager cacheManager = new CaffeineCacheManager(
+            "similarProducts", "productDetails", "similarIds");
+    private final AtomicLong nanos = new AtomicLong();
+    private final SimilarProductsIndex similarProductsIndex = new SimilarProductsIndex(100, 60, nanos::get);
+    private final Sinks.Many<ProductChangeEvent> events = Sinks.many().unicast().onBackpressureBuffer();
+
+    private CacheInvalidationService cacheInvalidationService;
+
+    @BeforeEach
+    void setUp() {
+        cacheInvalidationService = new CacheInvalidationService(
+            cacheManager,
+            productClient,
+            similarProductsIndex,
+            List.of(events::asFlux),
+            "similarProducts",
+            "productDetails",
+            "similarIds"
+        );
+        cacheInvalidationService.subscribe();
+
+        // Product 1 and 4 both list product 2 as similar
+        cacheManager.getCache("productDetails").put("2", new ProductDetail("2", "Product 2", 20.0, true));
+        cacheManager.getCache("similarIds").put("1", Arrays.asList("2", "3"));
+        cacheManager.getCache("similarProducts").put("1", Collections.emptyList());
+        cacheManager.getCache("similarProducts").put("4", Collections.emptyList());
+        cacheManager.getCache("similarProducts").put("5", Collections.emptyList());
+        similarProductsIndex.register("1", Arrays.asList("2", "3"));
+        similarProductsIndex.register("4", Arrays.asList("2"));
+        similarProductsIndex.register("5", Arrays.asList("3"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cacheInvalidationService.unsubscribe();
+    }
+
+    @Test
+    void shouldCascadeDetailEvictionToSimilarProductsLists() {
+        // When
+        List<String> evicted = cacheInvalidationService.invalidate(
+                new ProductChangeEvent("2", ProductChangeEvent.Type.DETAIL, false)).block();
+
+        // Then
+        assertEquals(3, evicted.size());
+        assertNull(cacheManager.getCache("productDetails").get("2"));
+        assertNull(cacheManager.getCache("similarProducts").get("1"));
+        assertNull(cacheManager.getCache("similarProducts").get("4"));
+        assertNotNull(cacheManager.getCache("similarProducts").get("5"));
+        verify(productClient, never()).getProductDetail("2");
+    }
+
+    @Test
+    void shouldCascadeEvictionAfterTuningTheListTtl() {
+        // Given
+        PerformanceSettings settings = new PerformanceSettings(100, 1500, 2000, 2, 4, 10);
+        settings.register("cache.similar-products.expiration", 60, 1, 86400);
+        settings.onChange("cache.similar-products.expiration",
+                seconds -> similarProductsIndex.expire(Duration.ofSeconds(seconds)));
+        settings.update("cache.similar-products.expiration", 3600);
+        nanos.addAndGet(Duration.ofMinutes(10).toNanos());
+
+        // When
+        List<String> evicted = cacheInvalidationService.invalidate(
+                new ProductChangeEvent("2", ProductChangeEvent.Type.DETAIL, false)).block();
+
+        // Then
+        assertEquals(3, evicted.size());
+        assertNull(cacheManager.getCache("similarProducts").get("1"));
+        assertNull(cacheManager.getCache("similarProducts").get("4"));
+    }
+
+    @Test
+    void shouldCascadeDetailEvictionToListBuiltByOtherReplica() {
+        // Given: replica A built the list of product 1, replica B only shares the L2 tier with it
+        InMemoryL2Cache l2Cache = new InMemoryL2Cache();
+        CacheManager replicaA = twoLevelCacheManager(l2Cache);
+        CacheManager replicaB = twoLevelCacheManager(l2Cache);
+        SimilarProductsIndex indexB = sharedIndex(l2Cache);
+        replicaA.getCache("similarProducts").put("1", List.of(new ProductDetail("2", "Product 2", 20.0, true)));
+        sharedIndex(l2Cache).register("1", Arrays.asList("2", "3"));
+        CacheInvalidationService replicaBInvalidation = new CacheInvalidationService(
+                replicaB, productClient, indexB, List.of(), "similarProducts", "productDetails", "similarIds");
+
+        // When
+        List<String> evicted = replicaBInvalidation.invalidate(
+                new ProductChangeEvent("2", ProductChangeEvent.Type.DETAIL, false)).block();
+
+        // Then
+        assertEquals(List.of("2", "1"), evicted);
+        assertNull(replicaB.getCache("similarProducts").get("1"));
+        assertNull(((TwoLevelCache) replicaA.getCache("similarProducts")).peek("1"));
+    }
+
+    private static CacheManager twoLevelCacheManager(InMemoryL2Cache l2Cache) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        L2CacheCodec codec = new L2CacheCodec(objectMapper, Map.of("similarProducts",
+                objectMapper.getTypeFactory().constructCollectionType(List.class, ProductDetail.class)));
+        CaffeineCacheManager local = new CaffeineCacheManager("similarProducts", "productDetails", "similarIds");
+        local.setAsyncCacheMode(true);
+        return new TwoLevelCacheManager(local, l2Cache, codec, "test:", Duration.ofMinutes(10),
+                Duration.ofMillis(100), new SimpleMeterRegistry());
+    }
+
+    private static SimilarProductsIndex sharedIndex(InMemoryL2Cache l2Cache) {
+        return new SimilarProductsIndex(100, 60, Ticker.systemTicker(), l2Cache, "test:",
+                Duration.ofMinutes(10), Duration.ofMillis(100));
+    }
+
+    @Test
+    void shouldEvictSimilarIdsAndOwnListOnly() {
+        // When
+        cacheInvalidationService.invalidate(
+                new ProductChangeEvent("1", ProductChangeEvent.Type.SIMILAR_IDS, false)).block();
+
+        // Then
+        assertNull(cacheManager.getCache("similarIds").get("1"));
+        assertNull(cacheManager.getCache("similarProducts").get("1"));
+        assertNotNull(cacheManager.getCache("productDetails").get("2"));
+        assertNotNull(cacheManager.getCache("similarProducts").get("4"));
+    }
+
+    @Test
+    void shouldRefreshDetailFromPushedEvent() {
+        // Given
+        when(productClient.getProductDetail("2"))
+            .thenReturn(Mono.just(new ProductDetail("2", "Product 2", 15.0, true)));
+
+        // When
+        events.tryEmitNext(new ProductChangeEvent("2", ProductChangeEvent.Type.DETAIL, true));
+
+        // Then
+        assertNull(cacheManager.getCache("similarProducts").get("1"));
+        verify(productClient).getProductDetail("2");
+    }
+}
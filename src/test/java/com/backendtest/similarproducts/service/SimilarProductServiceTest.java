@@ -1,21 +1,30 @@
 package com.backendtest.similarproducts.service;
 
 import com.backendtest.similarproducts.client.ProductClient;
+import com.backendtest.similarproducts.client.UpstreamStatusException;
 import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.tuning.PerformanceSettings;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.http.HttpStatus;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,17 +35,21 @@ class SimilarProductServiceTest {
 
     private SimilarProductService similarProductService;
 
+    private CaffeineCacheManager cacheManager;
+
     @BeforeEach
     void setUp() {
         // Create service manually with test values
+        cacheManager = new CaffeineCacheManager("similarProducts");
+        cacheManager.setAsyncCacheMode(true);
         similarProductService = new SimilarProductService(
             productClient, 
-            3000,
-            4,
+            new SimilarProductsIndex(100, 60),
+            cacheManager,
+            new PerformanceSettings(1000, 1500, 3000, 2, 4, 10),
             10,
             "similarProducts",
-            "productDetailOptimized",
-            2 
+            1
         );
     }
 
@@ -94,7 +107,7 @@ class SimilarProductServiceTest {
         String productId = "999";
         
         when(productClient.getProductDetail(productId))
-            .thenReturn(Mono.error(WebClientResponseException.create(404, "Not Found", null, null, null)));
+            .thenReturn(Mono.empty());
         
         // When & Then
         StepVerifier.create(similarProductService.getSimilarProducts(productId))
@@ -115,8 +128,29 @@ class SimilarProductServiceTest {
         
         // When & Then
         StepVerifier.create(similarProductService.getSimilarProducts(productId))
-                .expectNext(Collections.emptyList())
-                .verifyComplete();
+                .expectErrorSatisfies(error -> assertEquals(Collections.emptyList(),
+                        assertInstanceOf(DegradedResultException.class, error).getProducts()))
+                .verify();
+    }
+
+    @Test
+    void shouldSignalPartialListWhenDetailTimesOut() {
+        // Given
+        ProductDetail product3 = new ProductDetail("3", "Product 3", 30.0, false);
+        when(productClient.getProductDetail("1"))
+            .thenReturn(Mono.just(new ProductDetail("1", "Product 1", 10.0, true)));
+        when(productClient.getSimilarProductIds("1"))
+            .thenReturn(Mono.just(Arrays.asList("2", "3")));
+        when(productClient.getProductDetail("2"))
+            .thenReturn(Mono.error(new UpstreamStatusException(HttpStatus.GATEWAY_TIMEOUT)));
+        when(productClient.getProductDetail("3")).thenReturn(Mono.just(product3));
+
+        // When & Then
+        StepVerifier.create(similarProductService.getSimilarProducts("1", 5))
+                .expectErrorSatisfies(error -> assertEquals(List.of(product3),
+                        assertInstanceOf(DegradedResultException.class, error).getProducts()))
+                .verify(Duration.ofSeconds(5));
+        assertNull(cacheManager.getCache("similarProducts").get("1"));
     }
 
     @Test
@@ -132,7 +166,7 @@ class SimilarProductServiceTest {
         when(productClient.getSimilarProductIds(productId))
             .thenReturn(Mono.just(similarIds));
         when(productClient.getProductDetail("2"))
-            .thenReturn(Mono.error(WebClientResponseException.create(404, "Not Found", null, null, null)));
+            .thenReturn(Mono.empty());
         when(productClient.getProductDetail("3"))
             .thenReturn(Mono.just(product2));
         
@@ -141,4 +175,42 @@ class SimilarProductServiceTest {
                 .expectNext(Arrays.asList(product2))
                 .verifyComplete();
     }
-} 
\ No newline at end of file
+
+    @Test
+    void shouldFetchOnlyTopSimilarProductsWithOverFetch() {
+        // Given
+        String productId = "1";
+        ProductDetail product2 = new ProductDetail("2", "Product 2", 20.0, true);
+        ProductDetail product4 = new ProductDetail("4", "Product 4", 40.0, true);
+
+        when(productClient.getProductDetail(productId))
+            .thenReturn(Mono.just(new ProductDetail("1", "Product 1", 10.0, true)));
+        when(productClient.getSimilarProductIds(productId))
+            .thenReturn(Mono.just(Arrays.asList("2", "3", "4", "5", "6")));
+        when(productClient.getProductDetail("2")).thenReturn(Mono.just(product2));
+        when(productClient.getProductDetail("3")).thenReturn(Mono.empty());
+        when(productClient.getProductDetail("4")).thenReturn(Mono.just(product4));
+        lenient().when(productClient.getProductDetail("5")).thenReturn(Mono.never());
+        lenient().when(productClient.getProductDetail("6")).thenReturn(Mono.never());
+
+        // When & Then
+        StepVerifier.create(similarProductService.getSimilarProducts(productId, 2))
+                .expectNext(Arrays.asList(product2, product4))
+                .verifyComplete();
+        assertNull(cacheManager.getCache("similarProducts").get(productId));
+    }
+
+    @Test
+    void shouldSliceCachedFullList() {
+        // Given
+        ProductDetail product2 = new ProductDetail("2", "Product 2", 20.0, true);
+        ProductDetail product3 = new ProductDetail("3", "Product 3", 30.0, false);
+        cacheManager.getCache("similarProducts").put("1", Arrays.asList(product2, product3));
+
+        // When & Then
+        StepVerifier.create(similarProductService.getSimilarProducts("1", 1))
+                .expectNext(Collections.singletonList(product2))
+                .verifyComplete();
+        verifyNoInteractions(productClient);
+    }
+}
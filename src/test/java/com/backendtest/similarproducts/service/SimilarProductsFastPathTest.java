@@ -0,0 +1,153 @@
+package com.backendtest.similarproducts.service;
+
+import com.backendtest.similarproducts.cache.MissRatioCurve;
+import com.backendtest.similarproducts.cache.SampledCaffeineCache;
+import com.backendtest.similarproducts.model.ProductDetail;
+import com.backendtest.similarproducts.trace.TraceRecorder;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class SimilarProductsFastPathTest {
+
+    private static final ProductDetail PRODUCT_1 = new ProductDetail("1", "Product 1", 10.0, true);
+    private static final ProductDetail PRODUCT_2 = new ProductDetail("2", "Product 2", 20.0, true);
+    private static final ProductDetail PRODUCT_3 = new ProductDetail("3", "Product 3", 30.0, false);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger pipelineCalls = new AtomicInteger();
+    private final TraceRecorder traceRecorder = mock(TraceRecorder.class);
+    private CaffeineCacheManager cacheManager;
+    private SimilarProductsFastPath fastPath;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new CaffeineCacheManager("similarProducts", "similarIds", "productDetails");
+        cacheManager.setAsyncCacheMode(true);
+        fastPath = new SimilarProductsFastPath(cacheManager, new SimilarProductsIndex(100, 60), meterRegistry,
+                traceRecorder, "similarProducts", "similarIds", "productDetails");
+    }
+
+    @Test
+    void shouldServeCachedListInline() {
+        // Given
+        cacheManager.getCache("similarProducts").put("1", List.of(PRODUCT_2, PRODUCT_3));
+
+        // When / Then
+        StepVerifier.create(fastPath.serve("1", 1, this::pipeline))
+                .expectNext(List.of(PRODUCT_2))
+                .verifyComplete();
+        assertEquals(0, pipelineCalls.get());
+        assertEquals(1, meterRegistry.get("similar.products.requests").tag("path", "fast").timer().count());
+        verify(traceRecorder).request(eq("1"), eq(List.of(PRODUCT_2, PRODUCT_3)), eq(true), anyLong());
+    }
+
+    @Test
+    void shouldAssembleListFromCachedIdsAndDetails() {
+        // Given
+        cacheManager.getCache("productDetails").put("1", PRODUCT_1);
+        cacheManager.getCache("productDetails").put("2", PRODUCT_2);
+        cacheManager.getCache("productDetails").put("3", PRODUCT_3);
+        cacheManager.getCache("similarIds").put("1", List.of("3", "2"));
+
+        // When / Then
+        StepVerifier.create(fastPath.serve("1", Integer.MAX_VALUE, this::pipeline))
+                .expectNext(List.of(PRODUCT_3, PRODUCT_2))
+                .verifyComplete();
+        assertEquals(0, pipelineCalls.get());
+        assertEquals(List.of(PRODUCT_3, PRODUCT_2), cacheManager.getCache("similarProducts").get("1").get());
+    }
+
+    @Test
+    void shouldFallBackToPipelineWhenDetailIsMissing() {
+        // Given
+        cacheManager.getCache("productDetails").put("1", PRODUCT_1);
+        cacheManager.getCache("productDetails").put("2", PRODUCT_2);
+        cacheManager.getCache("similarIds").put("1", List.of("2", "3"));
+
+        // When / Then
+        StepVerifier.create(fastPath.serve("1", Integer.MAX_VALUE, this::pipeline))
+                .expectNext(List.of(PRODUCT_2))
+                .verifyComplete();
+        assertEquals(1, pipelineCalls.get());
+        assertEquals(1, meterRegistry.get("similar.products.requests").tag("path", "async").timer().count());
+    }
+
+    @Test
+    void shouldRecordEachLookupOnceInMissRatioCurves() {
+        // Given: caches feeding their miss ratio curves, as built by CacheConfig
+        Map<String, MissRatioCurve> curves = new HashMap<>();
+        CaffeineCacheManager sampledCacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name, AsyncCache<Object, Object> cache) {
+                MissRatioCurve curve = new MissRatioCurve(new double[] {1}, 1, 100, Duration.ofMinutes(10), Duration.ZERO);
+                curves.put(name, curve);
+                return new SampledCaffeineCache(name, cache, isAllowNullValues(), curve);
+            }
+        };
+        sampledCacheManager.setAsyncCacheMode(true);
+        sampledCacheManager.setCacheNames(List.of("similarProducts", "similarIds", "productDetails"));
+        SimilarProductsFastPath sampledFastPath = new SimilarProductsFastPath(sampledCacheManager,
+                new SimilarProductsIndex(100, 60), meterRegistry, traceRecorder, "similarProducts", "similarIds", "productDetails");
+
+        // When: a cold request goes through the pipeline
+        StepVerifier.create(sampledFastPath.serve("1", Integer.MAX_VALUE, () -> cachingPipeline(sampledCacheManager)))
+                .expectNext(List.of(PRODUCT_2, PRODUCT_3))
+                .verifyComplete();
+
+        // Then: every lookup is a single miss
+        assertEquals(1, curves.get("similarProducts").accesses());
+        assertEquals(1, curves.get("similarIds").accesses());
+        assertEquals(3, curves.get("productDetails").accesses());
+        curves.values().forEach(curve -> assertEquals(0, curve.points().get(0).hitRatio()));
+
+        // When: the same request is served inline
+        StepVerifier.create(sampledFastPath.serve("1", Integer.MAX_VALUE, () -> cachingPipeline(sampledCacheManager)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // Then: its lookup is a single hit
+        assertEquals(2, curves.get("similarProducts").accesses());
+        assertEquals(0.5, curves.get("similarProducts").points().get(0).hitRatio());
+        assertEquals(3, curves.get("productDetails").accesses());
+    }
+
+    /**
+     * Pipeline looking the caches up the way the {@code @Cacheable} methods do on a cold request
+     */
+    private Mono<List<ProductDetail>> cachingPipeline(CacheManager caches) {
+        pipelineCalls.incrementAndGet();
+        Cache productDetails = caches.getCache("productDetails");
+        Cache similarIds = caches.getCache("similarIds");
+        return Mono.fromFuture(caches.getCache("similarProducts").retrieve("1", () -> productDetails
+                .retrieve("1", () -> CompletableFuture.completedFuture(PRODUCT_1))
+                .thenCompose(product -> similarIds.retrieve("1", () -> CompletableFuture.completedFuture(List.of("2", "3"))))
+                .thenCompose(ids -> productDetails.retrieve("2", () -> CompletableFuture.completedFuture(PRODUCT_2))
+                        .thenCombine(productDetails.retrieve("3", () -> CompletableFuture.completedFuture(PRODUCT_3)),
+                                (second, third) -> List.of((ProductDetail) second, (ProductDetail) third)))));
+    }
+
+    private Mono<List<ProductDetail>> pipeline() {
+        pipelineCalls.incrementAndGet();
+        return Mono.just(List.of(PRODUCT_2));
+    }
+}
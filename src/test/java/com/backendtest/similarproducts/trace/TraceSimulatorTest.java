@@ -0,0 +1,100 @@
+package com.backendtest.similarproducts.trace;
+
+import com.backendtest.similarproducts.model.ProductDetail;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceSimulatorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRecordSampledEventsToTraceFile() throws IOException {
+        // Given: a dictionary of two strings, so that the request below spans several sessions
+        Path file = directory.resolve("similar-products.trace");
+        TraceRecorder recorder = new TraceRecorder(new SimpleMeterRegistry(), true, file.toString(), 1, 1 << 20, 2, 64, 60000);
+        recorder.start();
+
+        // When
+        recorder.request("1", List.of(new ProductDetail("2", "Product 2", 20.0, true),
+                new ProductDetail("3", "Product 3", 30.0, false)), true, 1_500_000);
+        recorder.downstream("/product/{productId}", "/product/2", 200, 40_000_000);
+        recorder.stop();
+
+        // Then
+        List<TraceEvent> events = new ArrayList<>();
+        TraceReader.read(file, events::add);
+        List<TraceEvent> recorded = events.stream().filter(event -> !(event instanceof TraceEvent.Session)).toList();
+        assertInstanceOf(TraceEvent.Session.class, events.get(0));
+        assertEquals(2, recorded.size(), events.toString());
+        TraceEvent.Request request = (TraceEvent.Request) recorded.get(0);
+        assertEquals("1", request.productId());
+        assertEquals(List.of("2", "3"), request.similarIds());
+        assertTrue(request.cached());
+        assertEquals(1500, request.latencyMicros());
+        TraceEvent.Downstream downstream = (TraceEvent.Downstream) recorded.get(1);
+        assertEquals("/product/2", downstream.path());
+        assertEquals(200, downstream.status());
+        assertEquals(40_000, downstream.latencyMicros());
+    }
+
+    @Test
+    void shouldPredictMoreCallsWithSmallerCaches() throws IOException {
+        // Given: a skewed request stream over 1000 products
+        Path file = directory.resolve("skewed.trace");
+        writeTrace(file, 20000, 1000);
+
+        // When
+        TraceSimulator.Report large = replay(file, 2000);
+        TraceSimulator.Report small = replay(file, 50);
+
+        // Then
+        assertEquals(20000, large.requests());
+        assertTrue(large.hitRatios().get("similar-products") > small.hitRatios().get("similar-products"),
+                large.format() + small.format());
+        assertTrue(large.cachedRatio() > small.cachedRatio(), large.format() + small.format());
+        assertTrue(large.downstreamCalls() < small.downstreamCalls(), large.format() + small.format());
+        assertEquals(0.5, large.observedCachedRatio(), 0.01);
+    }
+
+    private static TraceSimulator.Report replay(Path file, int maximumSize) throws IOException {
+        Properties properties = new Properties();
+        for (String cache : List.of("similar-products", "product-details", "similar-ids")) {
+            properties.setProperty("cache." + cache + ".maximum-size", String.valueOf(maximumSize));
+        }
+        properties.setProperty("simulator.processors", "1");
+        return new TraceSimulator(TraceSimulator.Config.from(properties)).replay(file);
+    }
+
+    private static void writeTrace(Path file, int requests, int products) throws IOException {
+        Random random = new Random(42);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            TraceWriter writer = new TraceWriter(out, true, 100000);
+            writer.write(new TraceEvent.Session(0, 1));
+            for (int i = 0; i < requests; i++) {
+                int product = (int) (products * Math.pow(random.nextDouble(), 3));
+                List<String> similarIds = List.of(String.valueOf(product + 1), String.valueOf(product + 2));
+                writer.write(new TraceEvent.Request(i, String.valueOf(product), similarIds, i % 2 == 0, 5000));
+                if (i % 10 == 0) {
+                    writer.write(new TraceEvent.Downstream(i, "/product/{productId}", "/product/" + product, 200, 20_000));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.backendtest.similarproducts.tuning;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PerformanceSettingsTest {
+
+    private final PerformanceSettings settings = new PerformanceSettings(1000, 1500, 2000, 2, 4, 2);
+
+    @Test
+    void shouldApplyChangesAndKeepBoundedHistory() {
+        // Given
+        AtomicInteger applied = new AtomicInteger();
+        settings.onChange(PerformanceSettings.MAX_CONNECTIONS, applied::set);
+
+        // When
+        settings.update(PerformanceSettings.MAX_CONNECTIONS, 5000);
+        settings.update(PerformanceSettings.RESPONSE_TIMEOUT, 800);
+        settings.update(PerformanceSettings.TIMEOUT_MULTIPLIER, 3);
+
+        // Then
+        assertEquals(5000, applied.get());
+        assertEquals(Duration.ofMillis(800), settings.getResponseTimeout());
+        assertEquals(3, settings.getTimeoutMultiplier());
+        List<PerformanceSettings.Change> history = settings.history();
+        assertEquals(List.of(PerformanceSettings.RESPONSE_TIMEOUT, PerformanceSettings.TIMEOUT_MULTIPLIER),
+                history.stream().map(PerformanceSettings.Change::setting).toList());
+        assertEquals(2000, history.get(0).oldValue());
+    }
+
+    @Test
+    void shouldRejectUnknownSettingsAndValuesOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> settings.update("webclient.unknown", 1));
+        assertThrows(IllegalArgumentException.class, () -> settings.update(PerformanceSettings.PARALLEL_RAILS, 0));
+        assertEquals(4, settings.get(PerformanceSettings.PARALLEL_RAILS));
+        assertEquals(List.of(), settings.history());
+    }
+
+    @Test
+    void shouldRestorePreviousValueWhenChangeCannotBeApplied() {
+        // Given
+        AtomicInteger applied = new AtomicInteger();
+        settings.onChange(PerformanceSettings.MAX_CONNECTIONS, applied::set);
+        settings.onChange(PerformanceSettings.MAX_CONNECTIONS, value -> {
+            if (value == 1) {
+                throw new IllegalStateException("pool too small");
+            }
+        });
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> settings.update(PerformanceSettings.MAX_CONNECTIONS, 1));
+        assertEquals(1000, settings.get(PerformanceSettings.MAX_CONNECTIONS));
+        assertEquals(1000, applied.get());
+        assertEquals(List.of(), settings.history());
+    }
+}